@@ -8,6 +8,8 @@ import com.ecommerce.cart.repository.CartItemRepository;
 import com.ecommerce.cart.repository.OrderItemRepository;
 import com.ecommerce.cart.repository.OrderRepository;
 import com.ecommerce.cart.repository.ProductRepository;
+import com.shopnow.id.IdGenerator;
+import com.shopnow.id.OrderNumbers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,7 +17,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,6 +34,9 @@ public class SpringBootCartService {
     @Autowired
     private OrderItemRepository orderItemRepository;
 
+    @Autowired
+    private IdGenerator idGenerator;
+
     // Get all cart items for a user
     public List<CartItem> getCartItems(String userId) {
         return cartItemRepository.findByUserId(userId);
@@ -111,9 +115,9 @@ public class SpringBootCartService {
         return savedOrder;
     }
 
-    // Generate unique order number
+    // Generate unique, time-sortable order number
     private String generateOrderNumber() {
-        return "ORD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return OrderNumbers.format(idGenerator.nextId());
     }
 
     // Get order by id
@@ -0,0 +1,62 @@
+package com.ecommerce.cart;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The cart as it was before it became a primitive engine, kept as the JMH
+ * baseline: lines in a HashMap, with the total and the item count recomputed
+ * by streaming over every line.
+ */
+class HashMapShoppingCart {
+    private final Map<String, Line> items = new HashMap<>();
+    private double total;
+
+    void addItem(ShoppingCart.Product product, int quantity) {
+        Line line = items.get(product.getId());
+        if (line != null) {
+            line.quantity += quantity;
+        } else {
+            items.put(product.getId(), new Line(product, quantity));
+        }
+        calculateTotal();
+    }
+
+    void updateItemQuantity(String productId, int quantity) {
+        if (items.containsKey(productId)) {
+            if (quantity <= 0) {
+                removeItem(productId);
+            } else {
+                items.get(productId).quantity = quantity;
+                calculateTotal();
+            }
+        }
+    }
+
+    void removeItem(String productId) {
+        items.remove(productId);
+        calculateTotal();
+    }
+
+    double getTotal() {
+        return total;
+    }
+
+    int getItemCount() {
+        return items.values().stream().mapToInt(line -> line.quantity).sum();
+    }
+
+    private void calculateTotal() {
+        total = items.values().stream().mapToDouble(line -> line.product.getPrice() * line.quantity).sum();
+    }
+
+    private static final class Line {
+        final ShoppingCart.Product product;
+        int quantity;
+
+        Line(ShoppingCart.Product product, int quantity) {
+            this.product = product;
+            this.quantity = quantity;
+        }
+    }
+}
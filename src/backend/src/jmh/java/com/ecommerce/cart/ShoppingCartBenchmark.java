@@ -0,0 +1,67 @@
+package com.ecommerce.cart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One quantity update followed by a total and an item-count read, on carts of
+ * increasing size: the streaming HashMap cart against the primitive engine in
+ * src/lib/JavaCodeExample.java.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShoppingCartBenchmark {
+    @Param({"5", "50", "500"})
+    public int lines;
+
+    private String[] productIds;
+    private HashMapShoppingCart baseline;
+    private ShoppingCart engine;
+    private int next;
+
+    @Setup
+    public void setup() {
+        productIds = new String[lines];
+        baseline = new HashMapShoppingCart();
+        engine = new ShoppingCart("bench");
+        for (int i = 0; i < lines; i++) {
+            productIds[i] = "p" + i;
+            ShoppingCart.Product product = new ShoppingCart.Product(productIds[i], "Product " + i,
+                    1.99 + i, null, "bench");
+            baseline.addItem(product, 1);
+            engine.addItem(product, 1);
+        }
+    }
+
+    @Benchmark
+    public void hashMapCart(Blackhole blackhole) {
+        String productId = productIds[next++ % lines];
+        baseline.updateItemQuantity(productId, 1 + (next & 3));
+        blackhole.consume(baseline.getTotal());
+        blackhole.consume(baseline.getItemCount());
+    }
+
+    @Benchmark
+    public void primitiveCart(Blackhole blackhole) {
+        String productId = productIds[next++ % lines];
+        engine.updateItemQuantity(productId, 1 + (next & 3));
+        blackhole.consume(engine.getTotal());
+        blackhole.consume(engine.getItemCount());
+    }
+}
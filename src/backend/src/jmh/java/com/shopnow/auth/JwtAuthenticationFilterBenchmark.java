@@ -0,0 +1,84 @@
+package com.shopnow.auth;
+
+import com.shopnow.model.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request in {@link JwtAuthenticationFilter}:
+ * the old path (a parser built and the signature verified twice), a cache
+ * miss (shared parser, one verification) and a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+    private static final String SECRET = "shopnowSecretKey12345678901234567890123456789012";
+    private static final long EXPIRATION = 86400000L;
+
+    private Key key;
+    private String token;
+    private JwtAuthenticationFilter cachedFilter;
+    private JwtAuthenticationFilter uncachedFilter;
+
+    @Setup
+    public void setup() {
+        key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        JwtTokenProvider cached = new JwtTokenProvider(SECRET, EXPIRATION, 10000);
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("bench@example.com");
+        user.setFirstName("Bench");
+        user.setLastName("User");
+        token = cached.generateToken(user, AuthorityUtils.createAuthorityList("ROLE_USER"));
+        cachedFilter = new JwtAuthenticationFilter(cached);
+        uncachedFilter = new JwtAuthenticationFilter(new JwtTokenProvider(SECRET, EXPIRATION, 0));
+    }
+
+    /** What the filter did before: validateToken then getEmailFromToken, each with a fresh parser. */
+    @Benchmark
+    public String legacyDoubleParse() {
+        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public Object filterCacheMiss() throws Exception {
+        return filter(uncachedFilter);
+    }
+
+    @Benchmark
+    public Object filterCacheHit() throws Exception {
+        return filter(cachedFilter);
+    }
+
+    private Object filter(JwtAuthenticationFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cart/1");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+}
@@ -0,0 +1,91 @@
+package com.shopnow.catalog;
+
+import com.shopnow.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link SearchIndex#search} over a generated catalog of a million
+ * products. The queries match from a few thousand up to a tenth of the
+ * documents, so top-k selection over the scored documents dominates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class SearchIndexBenchmark {
+    private static final String[] ADJECTIVES = {"wireless", "compact", "classic", "smart", "portable", "premium",
+            "organic", "vintage", "ergonomic", "durable", "modern", "rustic", "sleek", "heavy", "light",
+            "electric", "manual", "deluxe", "basic", "pro"};
+    private static final String[] NOUNS = {"headphones", "speaker", "lamp", "chair", "desk", "kettle", "blender",
+            "backpack", "jacket", "watch", "camera", "keyboard", "mouse", "monitor", "charger", "bottle", "mug",
+            "pillow", "blanket", "rug", "shelf", "mirror", "clock", "vase", "candle", "knife", "pan", "pot",
+            "grill", "tent", "bicycle", "helmet", "glove", "boot", "sneaker", "sandal", "scarf", "hat", "belt",
+            "wallet", "purse", "tablet", "phone", "router", "drone", "printer", "scanner", "projector", "heater",
+            "fan"};
+    private static final String[] CATEGORIES = {"Electronics", "Home", "Kitchen", "Outdoors", "Fashion", "Sports",
+            "Office", "Garden", "Toys", "Beauty"};
+
+    @Param({"1000000"})
+    public int products;
+
+    @Param({"wireless", "electronics", "portable speaker", "durable steel frame"})
+    public String query;
+
+    @Param({"20"})
+    public int limit;
+
+    private SearchIndex searchIndex;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        String[] words = new String[500];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "word" + i;
+        }
+        words[0] = "steel";
+        words[1] = "frame";
+        List<Product> catalog = new ArrayList<>(products);
+        for (int i = 1; i <= products; i++) {
+            Product product = new Product();
+            product.setId((long) i);
+            product.setName(ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + NOUNS[random.nextInt(NOUNS.length)] + " " + (i % 1000));
+            product.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            StringBuilder description = new StringBuilder();
+            for (int w = 4 + random.nextInt(12); w > 0; w--) {
+                description.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            product.setDescription(description.toString());
+            product.setPrice(1 + random.nextInt(50000) / 100.0);
+            product.setRating(random.nextInt(51) / 10.0);
+            catalog.add(product);
+        }
+        CatalogIndex catalogIndex = new CatalogIndex(null);
+        catalogIndex.rebuild(catalog);
+        searchIndex = new SearchIndex(catalogIndex);
+        searchIndex.load();
+    }
+
+    @Benchmark
+    public List<Product> search() {
+        return searchIndex.search(query, limit);
+    }
+}
@@ -0,0 +1,102 @@
+package com.shopnow.order;
+
+import com.shopnow.ShopNowApplication;
+import com.shopnow.model.User;
+import com.shopnow.repository.UserRepository;
+import com.shopnow.service.CartService;
+import com.shopnow.service.OrderService;
+import com.shopnow.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checkout throughput with many concurrent buyers, with and without group
+ * commit. Each operation puts one line in the thread's own cart and checks it
+ * out, against the in-memory H2 database the app runs on by default. The
+ * number of checkout transactions is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(1)
+public class CheckoutCommitBenchmark {
+    private static final long PRODUCT_ID = 1L;
+
+    @Param({"false", "true"})
+    public boolean groupCommit;
+
+    private ConfigurableApplicationContext context;
+    private CartService cartService;
+    private OrderService orderService;
+    private UserService userService;
+    private CheckoutBatcher checkoutBatcher;
+    private final List<Long> userIds = new ArrayList<>();
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ShopNowApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:checkout-bench-" + groupCommit,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--shopnow.snapshot.enabled=false",
+                "--shopnow.checkout.group-commit.enabled=" + groupCommit);
+        cartService = context.getBean(CartService.class);
+        orderService = context.getBean(OrderService.class);
+        userService = context.getBean(UserService.class);
+        checkoutBatcher = context.getBean(CheckoutBatcher.class);
+        UserRepository users = context.getBean(UserRepository.class);
+        for (int i = 0; i < 256; i++) {
+            User user = new User();
+            user.setEmail("bench-" + i + "@example.com");
+            user.setPassword("unused");
+            userIds.add(users.save(user).getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        System.out.println();
+        System.out.println("group commit " + groupCommit + ": " + checkoutBatcher.stats());
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Buyer {
+        Long userId;
+
+        @Setup(Level.Trial)
+        public void pick(CheckoutCommitBenchmark benchmark) {
+            userId = benchmark.userIds.get(benchmark.nextUser.getAndIncrement());
+        }
+    }
+
+    @Benchmark
+    public Object checkout(Buyer buyer) {
+        cartService.addToCart(userService.reference(buyer.userId), PRODUCT_ID, 1);
+        return orderService.createOrder(buyer.userId, "1 Bench Street", "card", null);
+    }
+}
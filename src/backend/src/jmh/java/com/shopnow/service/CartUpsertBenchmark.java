@@ -0,0 +1,105 @@
+package com.shopnow.service;
+
+import com.shopnow.ShopNowApplication;
+import com.shopnow.model.Product;
+import com.shopnow.model.User;
+import com.shopnow.repository.CartItemRepository;
+import com.shopnow.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Increments of one hot cart line from many threads at once, the two-tab case
+ * under contention: the single-statement MERGE upsert against the
+ * find-then-save path it replaced ({@link FindThenSaveCart}). Both run against
+ * the in-memory H2 database the app uses by default. At the end of each trial
+ * the increments that succeeded are compared with the quantity stored, so
+ * lost updates are printed next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class CartUpsertBenchmark {
+    private static final long PRODUCT_ID = 1L;
+
+    @Param({"merge", "findThenSave"})
+    public String strategy;
+
+    private ConfigurableApplicationContext context;
+    private CartService cartService;
+    private FindThenSaveCart baseline;
+    private JdbcTemplate jdbcTemplate;
+    private User user;
+    private Product product;
+    private final AtomicLong increments = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ShopNowApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:cart-upsert-bench-" + strategy,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--shopnow.snapshot.enabled=false");
+        cartService = context.getBean(CartService.class);
+        baseline = new FindThenSaveCart(context.getBean(CartItemRepository.class),
+                context.getBean(TransactionTemplate.class));
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        User saved = new User();
+        saved.setEmail("cart-upsert-bench@example.com");
+        saved.setPassword("unused");
+        user = context.getBean(UserService.class).reference(context.getBean(UserRepository.class).save(saved).getId());
+        product = context.getBean(ProductService.class).findById(PRODUCT_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        Integer stored = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM cart_items WHERE user_id = ?", Integer.class, user.getId());
+        System.out.println();
+        System.out.println(strategy + ": " + increments.get() + " increments succeeded, " + failures.get()
+                + " failed, quantity stored " + stored + ", lost " + (increments.get() - stored));
+        context.close();
+    }
+
+    @Benchmark
+    public void increment() {
+        try {
+            if ("merge".equals(strategy)) {
+                cartService.incrementCart(user, PRODUCT_ID, 1);
+            } else {
+                baseline.increment(user, product, 1);
+            }
+            increments.incrementAndGet();
+        } catch (DataAccessException e) {
+            // Find-then-save races the unique (user_id, product_id) key on the first insert.
+            failures.incrementAndGet();
+        }
+    }
+}
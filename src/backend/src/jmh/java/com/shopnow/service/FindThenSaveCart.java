@@ -0,0 +1,37 @@
+package com.shopnow.service;
+
+import com.shopnow.model.CartItem;
+import com.shopnow.model.Product;
+import com.shopnow.model.User;
+import com.shopnow.repository.CartItemRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The cart write as it was before the single-statement upsert, kept as the JMH
+ * baseline: read the line, change it in memory and save it back, in one
+ * transaction and two statements.
+ */
+class FindThenSaveCart {
+    private final CartItemRepository cartItemRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    FindThenSaveCart(CartItemRepository cartItemRepository, TransactionTemplate transactionTemplate) {
+        this.cartItemRepository = cartItemRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    void increment(User user, Product product, int delta) {
+        transactionTemplate.executeWithoutResult(status -> {
+            CartItem cartItem = cartItemRepository.findByUserAndProduct(user, product)
+                    .orElseGet(() -> {
+                        CartItem newItem = new CartItem();
+                        newItem.setUser(user);
+                        newItem.setProduct(product);
+                        newItem.setQuantity(0);
+                        return newItem;
+                    });
+            cartItem.setQuantity(cartItem.getQuantity() + delta);
+            cartItemRepository.save(cartItem);
+        });
+    }
+}
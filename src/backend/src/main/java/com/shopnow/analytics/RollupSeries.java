@@ -0,0 +1,87 @@
+package com.shopnow.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Per-minute sales buckets for one key, held in parallel primitive ring
+ * buffers. Slot {@code minute % capacity} belongs to whichever minute last
+ * wrote it, so a bucket is reset lazily the first time a newer minute lands
+ * in it and old minutes simply age out.
+ */
+final class RollupSeries {
+    private final long[] minutes;
+    private final double[] revenue;
+    private final long[] units;
+    private final long[] orders;
+
+    RollupSeries(int capacity) {
+        this.minutes = new long[capacity];
+        this.revenue = new double[capacity];
+        this.units = new long[capacity];
+        this.orders = new long[capacity];
+        Arrays.fill(minutes, -1);
+    }
+
+    int capacity() {
+        return minutes.length;
+    }
+
+    /** Returns false when the minute is already older than anything the buffer can hold. */
+    synchronized boolean add(long minute, double revenue, long units, long orders) {
+        int slot = slot(minute);
+        if (minutes[slot] != minute) {
+            if (minutes[slot] > minute) {
+                return false;
+            }
+            minutes[slot] = minute;
+            this.revenue[slot] = 0;
+            this.units[slot] = 0;
+            this.orders[slot] = 0;
+        }
+        this.revenue[slot] += revenue;
+        this.units[slot] += units;
+        this.orders[slot] += orders;
+        return true;
+    }
+
+    /** Adds the minutes {@code [from, to)} still held by the buffer into {@code into}. */
+    synchronized void sum(long from, long to, Totals into) {
+        long start = Math.max(from, to - minutes.length);
+        for (long minute = start; minute < to; minute++) {
+            int slot = slot(minute);
+            if (minutes[slot] == minute) {
+                into.revenue += revenue[slot];
+                into.units += units[slot];
+                into.orders += orders[slot];
+            }
+        }
+    }
+
+    void merge(RollupSeries other) {
+        long[] otherMinutes;
+        double[] otherRevenue;
+        long[] otherUnits;
+        long[] otherOrders;
+        synchronized (other) {
+            otherMinutes = other.minutes.clone();
+            otherRevenue = other.revenue.clone();
+            otherUnits = other.units.clone();
+            otherOrders = other.orders.clone();
+        }
+        for (int i = 0; i < otherMinutes.length; i++) {
+            if (otherMinutes[i] >= 0) {
+                add(otherMinutes[i], otherRevenue[i], otherUnits[i], otherOrders[i]);
+            }
+        }
+    }
+
+    private int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) minutes.length);
+    }
+
+    static final class Totals {
+        double revenue;
+        long units;
+        long orders;
+    }
+}
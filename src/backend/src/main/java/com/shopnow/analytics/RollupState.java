@@ -0,0 +1,64 @@
+package com.shopnow.analytics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** One complete set of rollup series: the overall total plus one series per category and per product. */
+final class RollupState {
+    static final String UNCATEGORIZED = "uncategorized";
+
+    final RollupSeries total;
+    final Map<String, RollupSeries> categories = new ConcurrentHashMap<>();
+    final Map<Long, RollupSeries> products = new ConcurrentHashMap<>();
+    private final int retentionMinutes;
+    private final int productRetentionMinutes;
+
+    RollupState(int retentionMinutes, int productRetentionMinutes) {
+        this.retentionMinutes = retentionMinutes;
+        this.productRetentionMinutes = productRetentionMinutes;
+        this.total = new RollupSeries(retentionMinutes);
+    }
+
+    /** Adds one order; each category and product it touches counts the order once. */
+    boolean record(long minute, List<Line> lines) {
+        RollupSeries.Totals order = new RollupSeries.Totals();
+        Map<String, RollupSeries.Totals> byCategory = new LinkedHashMap<>();
+        Map<Long, RollupSeries.Totals> byProduct = new LinkedHashMap<>();
+        for (Line line : lines) {
+            double revenue = line.price() * line.quantity();
+            order.revenue += revenue;
+            order.units += line.quantity();
+            String category = line.category() == null ? UNCATEGORIZED : line.category();
+            add(byCategory.computeIfAbsent(category, key -> new RollupSeries.Totals()), revenue, line.quantity());
+            add(byProduct.computeIfAbsent(line.productId(), key -> new RollupSeries.Totals()), revenue, line.quantity());
+        }
+        if (!total.add(minute, order.revenue, order.units, 1)) {
+            return false;
+        }
+        byCategory.forEach((category, totals) -> categories
+                .computeIfAbsent(category, key -> new RollupSeries(retentionMinutes))
+                .add(minute, totals.revenue, totals.units, 1));
+        byProduct.forEach((productId, totals) -> products
+                .computeIfAbsent(productId, key -> new RollupSeries(productRetentionMinutes))
+                .add(minute, totals.revenue, totals.units, 1));
+        return true;
+    }
+
+    void merge(RollupState other) {
+        total.merge(other.total);
+        other.categories.forEach((category, series) -> categories
+                .computeIfAbsent(category, key -> new RollupSeries(retentionMinutes)).merge(series));
+        other.products.forEach((productId, series) -> products
+                .computeIfAbsent(productId, key -> new RollupSeries(productRetentionMinutes)).merge(series));
+    }
+
+    private static void add(RollupSeries.Totals totals, double revenue, int units) {
+        totals.revenue += revenue;
+        totals.units += units;
+    }
+
+    record Line(long productId, String category, int quantity, double price) {
+    }
+}
@@ -0,0 +1,358 @@
+package com.shopnow.analytics;
+
+import com.shopnow.dto.SalesRollupDto;
+import com.shopnow.model.Order;
+import com.shopnow.model.OrderItem;
+import com.shopnow.order.OrderPlacedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Streaming sales rollups over placed orders. Every committed order is folded
+ * into per-minute buckets for the overall total, its categories and its
+ * products; sliding and tumbling windows are summed from those buckets, so
+ * reads never touch the database.
+ *
+ * <p>{@link #rebuild()} replays the retained history from the database in
+ * parallel time slices into a fresh state while live orders keep flowing into
+ * both the old and the new one, then swaps the new state in. An order created
+ * just before a rebuild starts but committed after its slice was read is
+ * missed by that rebuild.
+ */
+@Component
+public class SalesRollupEngine {
+    private static final Logger log = LoggerFactory.getLogger(SalesRollupEngine.class);
+
+    private static final String REPLAY_SQL =
+            "SELECT o.id, o.created_at, i.product_id, i.quantity, i.price, p.category FROM orders o "
+                    + "JOIN order_items i ON i.order_id = o.id JOIN products p ON p.id = i.product_id "
+                    + "WHERE o.created_at >= ? AND o.created_at < ? ORDER BY o.id";
+    private static final int SLICES_PER_THREAD = 4;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int retentionMinutes;
+    private final int productRetentionMinutes;
+    private final int replayThreads;
+    private final boolean rebuildOnStartup;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile RollupState current;
+    // Guarded by swapLock: the state a running rebuild is filling, and the creation time it replays up to.
+    private RollupState building;
+    private LocalDateTime buildingFrom;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile long lastReplayedOrders;
+    private volatile long lastRebuildMillis;
+
+    public SalesRollupEngine(
+            JdbcTemplate jdbcTemplate,
+            @Value("${shopnow.analytics.retention:24h}") Duration retention,
+            @Value("${shopnow.analytics.product-retention:1h}") Duration productRetention,
+            @Value("${shopnow.analytics.replay-threads:4}") int replayThreads,
+            @Value("${shopnow.analytics.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionMinutes = (int) Math.max(1, retention.toMinutes());
+        this.productRetentionMinutes = (int) Math.max(1, Math.min(productRetention.toMinutes(), retentionMinutes));
+        this.replayThreads = Math.max(1, replayThreads);
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.current = newState();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (rebuildOnStartup) {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Could not rebuild sales rollups from order history", e);
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        Order order = event.getOrder();
+        try {
+            List<RollupState.Line> lines = new ArrayList<>(order.getItems().size());
+            for (OrderItem item : order.getItems()) {
+                lines.add(new RollupState.Line(item.getProduct().getId(), item.getProduct().getCategory(),
+                        item.getQuantity(), item.getPrice()));
+            }
+            record(order.getCreatedAt(), lines);
+        } catch (RuntimeException e) {
+            // The order is already committed; a rollup problem must not fail the checkout.
+            failures.incrementAndGet();
+            log.warn("Could not add order {} to sales rollups", order.getId(), e);
+        }
+    }
+
+    /** Replays the retained order history into a fresh state and swaps it in. */
+    public synchronized Map<String, Object> rebuild() {
+        long started = System.currentTimeMillis();
+        LocalDateTime until = LocalDateTime.now();
+        RollupState fresh = newState();
+        swapLock.writeLock().lock();
+        try {
+            building = fresh;
+            buildingFrom = until;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        long orders = -1;
+        try {
+            orders = replay(until.minusMinutes(retentionMinutes), until, fresh);
+        } finally {
+            swapLock.writeLock().lock();
+            try {
+                if (orders >= 0) {
+                    current = fresh;
+                }
+                building = null;
+                buildingFrom = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+        }
+
+        rebuilds.incrementAndGet();
+        lastReplayedOrders = orders;
+        lastRebuildMillis = System.currentTimeMillis() - started;
+        log.info("Rebuilt sales rollups from {} orders in {} ms", orders, lastRebuildMillis);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("replayedOrders", orders);
+        result.put("millis", lastRebuildMillis);
+        return result;
+    }
+
+    /** Totals of the last {@code window}, ending with the current minute. */
+    public SalesRollupDto summary(Duration window) {
+        return sliding("total", current.total, window);
+    }
+
+    public List<SalesRollupDto> categories(Duration window) {
+        List<SalesRollupDto> result = new ArrayList<>();
+        current.categories.forEach((category, series) -> result.add(sliding(category, series, window)));
+        return ranked(result, Integer.MAX_VALUE);
+    }
+
+    public List<SalesRollupDto> topProducts(Duration window, int limit) {
+        List<SalesRollupDto> result = new ArrayList<>();
+        current.products.forEach((productId, series) ->
+                result.add(sliding(String.valueOf(productId), series, window)));
+        return ranked(result, limit);
+    }
+
+    /**
+     * Consecutive {@code bucket}-sized windows aligned to the epoch and covering
+     * the last {@code span}, oldest first, for the total or one category or product.
+     */
+    public List<SalesRollupDto> timeline(String category, Long productId, Duration bucket, Duration span) {
+        RollupState state = current;
+        String key;
+        RollupSeries series;
+        if (productId != null) {
+            key = String.valueOf(productId);
+            series = state.products.get(productId);
+        } else if (category != null) {
+            key = category;
+            series = state.categories.get(category);
+        } else {
+            key = "total";
+            series = state.total;
+        }
+        int capacity = productId != null ? productRetentionMinutes : retentionMinutes;
+        long width = clamp(bucket, capacity);
+        long count = Math.max(1, Math.min(ceilDiv(span.toMinutes(), width), capacity / width));
+        long last = Math.floorDiv(currentMinute(), width) * width;
+
+        List<SalesRollupDto> result = new ArrayList<>((int) count);
+        for (long start = last - (count - 1) * width; start <= last; start += width) {
+            result.add(rollup(key, series, start, start + width));
+        }
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        RollupState state = current;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("retentionMinutes", retentionMinutes);
+        result.put("productRetentionMinutes", productRetentionMinutes);
+        result.put("categories", state.categories.size());
+        result.put("products", state.products.size());
+        result.put("recordedOrders", recorded.get());
+        result.put("droppedOrders", dropped.get());
+        result.put("failures", failures.get());
+        result.put("rebuilds", rebuilds.get());
+        result.put("lastReplayedOrders", lastReplayedOrders);
+        result.put("lastRebuildMillis", lastRebuildMillis);
+        return result;
+    }
+
+    private void record(LocalDateTime createdAt, List<RollupState.Line> lines) {
+        long minute = minuteOf(createdAt);
+        swapLock.readLock().lock();
+        try {
+            if (current.record(minute, lines)) {
+                recorded.incrementAndGet();
+            } else {
+                dropped.incrementAndGet();
+            }
+            if (building != null && !createdAt.isBefore(buildingFrom)) {
+                building.record(minute, lines);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private long replay(LocalDateTime from, LocalDateTime until, RollupState into) {
+        int slices = replayThreads * SLICES_PER_THREAD;
+        long spanMillis = Duration.between(from, until).toMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(replayThreads, runnable -> {
+            Thread thread = new Thread(runnable, "analytics-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<SliceReplay>> futures = new ArrayList<>(slices);
+            for (int i = 0; i < slices; i++) {
+                LocalDateTime sliceFrom = from.plus(Duration.ofMillis(spanMillis * i / slices));
+                LocalDateTime sliceTo = i == slices - 1 ? until
+                        : from.plus(Duration.ofMillis(spanMillis * (i + 1) / slices));
+                futures.add(pool.submit(() -> replaySlice(sliceFrom, sliceTo)));
+            }
+            long orders = 0;
+            for (Future<SliceReplay> future : futures) {
+                SliceReplay slice = future.get();
+                into.merge(slice.state);
+                orders += slice.orders;
+            }
+            return orders;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Sales rollup rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Sales rollup rebuild failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private SliceReplay replaySlice(LocalDateTime from, LocalDateTime until) {
+        SliceReplay slice = new SliceReplay();
+        Timestamp start = Timestamp.valueOf(from);
+        Timestamp end = Timestamp.valueOf(until);
+        jdbcTemplate.query(REPLAY_SQL, slice, start, end);
+        slice.flush();
+        return slice;
+    }
+
+    private SalesRollupDto sliding(String key, RollupSeries series, Duration window) {
+        long now = currentMinute();
+        long width = clamp(window, series.capacity());
+        return rollup(key, series, now - width + 1, now + 1);
+    }
+
+    private SalesRollupDto rollup(String key, RollupSeries series, long fromMinute, long toMinute) {
+        RollupSeries.Totals totals = new RollupSeries.Totals();
+        if (series != null) {
+            series.sum(fromMinute, toMinute, totals);
+        }
+        return new SalesRollupDto(key, timeOf(fromMinute), timeOf(toMinute),
+                totals.revenue, totals.units, totals.orders);
+    }
+
+    private static List<SalesRollupDto> ranked(List<SalesRollupDto> rollups, int limit) {
+        return rollups.stream()
+                .filter(rollup -> rollup.getOrders() > 0)
+                .sorted(Comparator.comparingDouble(SalesRollupDto::getRevenue).reversed())
+                .limit(Math.max(0, limit))
+                .toList();
+    }
+
+    private RollupState newState() {
+        return new RollupState(retentionMinutes, productRetentionMinutes);
+    }
+
+    private long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+
+    private long minuteOf(LocalDateTime time) {
+        return Math.floorDiv(time.atZone(zone).toEpochSecond(), 60);
+    }
+
+    private LocalDateTime timeOf(long minute) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(minute * 60), zone);
+    }
+
+    private static long clamp(Duration duration, int capacity) {
+        return Math.max(1, Math.min(duration.toMinutes(), capacity));
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    /** Folds one time slice's rows, ordered by order id, into a private state. */
+    private final class SliceReplay implements RowCallbackHandler {
+        final RollupState state = newState();
+        final List<RollupState.Line> lines = new ArrayList<>();
+        long orderId = -1;
+        long minute;
+        long orders;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("id");
+            if (id != orderId) {
+                flush();
+                orderId = id;
+                minute = minuteOf(rs.getTimestamp("created_at").toLocalDateTime());
+            }
+            lines.add(new RollupState.Line(rs.getLong("product_id"), rs.getString("category"),
+                    rs.getInt("quantity"), rs.getDouble("price")));
+        }
+
+        void flush() {
+            if (!lines.isEmpty()) {
+                state.record(minute, lines);
+                orders++;
+                lines.clear();
+            }
+        }
+    }
+}
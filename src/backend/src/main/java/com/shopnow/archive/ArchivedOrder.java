@@ -0,0 +1,30 @@
+package com.shopnow.archive;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class ArchivedOrder {
+    private final long id;
+    private final String orderNumber;
+    private final long userId;
+    private final double total;
+    private final String status;
+    private final String shippingAddress;
+    private final String paymentMethod;
+    private final LocalDateTime createdAt;
+    private final String idempotencyKey;
+    private final List<Line> lines;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Line {
+        private final long productId;
+        private final int quantity;
+        private final double price;
+    }
+}
@@ -0,0 +1,293 @@
+package com.shopnow.archive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Read side and file registry of the cold order archive: a directory of
+ * append-only {@link OrderSegment} files. Segment footers are loaded at
+ * startup; inflated blocks are kept in a small bounded cache. Once
+ * {@code merge-factor} small segments have piled up at the tail they are merged
+ * into one, so lookups do not fan out over one segment per archiver chunk.
+ */
+@Component
+public class OrderArchive {
+    private static final Logger log = LoggerFactory.getLogger(OrderArchive.class);
+    private static final String SEGMENT_GLOB = "segment-*.seg";
+
+    private final Path directory;
+    private final boolean enabled;
+    private final int ordersPerBlock;
+    private final int mergeFactor;
+    private final int segmentTargetOrders;
+    private final Cache<String, List<ArchivedOrder>> blocks;
+    private volatile List<OrderSegment> segments = List.of();
+    private final List<Path> retired = new ArrayList<>();
+    private long nextSegment = 1;
+    private volatile long merges;
+
+    public OrderArchive(
+            @Value("${shopnow.archive.directory:data/order-archive}") String directory,
+            @Value("${shopnow.archive.enabled:false}") boolean enabled,
+            @Value("${shopnow.archive.orders-per-block:256}") int ordersPerBlock,
+            @Value("${shopnow.archive.block-cache-size:64}") long blockCacheSize,
+            @Value("${shopnow.archive.merge-factor:8}") int mergeFactor,
+            @Value("${shopnow.archive.segment-target-orders:50000}") int segmentTargetOrders) {
+        this.directory = Path.of(directory);
+        this.enabled = enabled;
+        this.ordersPerBlock = Math.max(1, ordersPerBlock);
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.segmentTargetOrders = Math.max(1, segmentTargetOrders);
+        this.blocks = Caffeine.newBuilder().maximumSize(blockCacheSize).recordStats().build();
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(Comparator.naturalOrder());
+        List<OrderSegment> opened = new ArrayList<>();
+        for (Path path : paths) {
+            opened.add(OrderSegment.open(path));
+            nextSegment = Math.max(nextSegment, sequenceOf(path) + 1);
+        }
+        // A crash after a merge but before its inputs were deleted leaves them
+        // alongside the merged segment; they are dropped here.
+        List<OrderSegment> live = new ArrayList<>();
+        for (OrderSegment segment : opened) {
+            boolean merged = opened.stream().anyMatch(other ->
+                    other.orderCount() > segment.orderCount() && other.covers(segment));
+            if (merged) {
+                Files.deleteIfExists(segment.path());
+            } else {
+                live.add(segment);
+            }
+        }
+        segments = List.copyOf(live);
+        log.info("Opened {} order archive segments in {}", live.size(), directory);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Writes the orders to a new segment; once this returns they can be read back from the archive. */
+    public synchronized void append(List<ArchivedOrder> orders) throws IOException {
+        if (orders.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Path path = nextPath();
+        OrderSegment segment = OrderSegment.write(path, orders, ordersPerBlock);
+        List<OrderSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = List.copyOf(updated);
+        log.info("Archived {} orders into {} ({} blocks, {} -> {} bytes)", segment.orderCount(), path,
+                segment.blockCount(), segment.rawBytes(), segment.compressedBytes());
+        compact();
+    }
+
+    public boolean contains(long orderId) {
+        for (OrderSegment segment : segments) {
+            if (segment.contains(orderId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Optional<ArchivedOrder> findById(long orderId) {
+        for (OrderSegment segment : segments) {
+            Optional<ArchivedOrder> order = find(segment, orderId);
+            if (order.isPresent()) {
+                return order;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Returns the user's archived order placed with this idempotency key, if any. */
+    public Optional<ArchivedOrder> findByIdempotencyKey(long userId, String idempotencyKey) {
+        for (OrderSegment segment : segments) {
+            for (long orderId : segment.ordersWithKey(userId, idempotencyKey)) {
+                Optional<ArchivedOrder> order = find(segment, orderId)
+                        .filter(candidate -> idempotencyKey.equals(candidate.getIdempotencyKey()));
+                if (order.isPresent()) {
+                    return order;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns up to {@code limit} of the user's archived orders with an id below
+     * {@code beforeId}, newest (highest id) first. The user's blocks are visited
+     * newest first by their id range, and the walk stops once no remaining block
+     * can hold an order newer than the oldest one on the page.
+     */
+    public List<ArchivedOrder> findByUser(long userId, long beforeId, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<BlockRef> candidates = new ArrayList<>();
+        for (OrderSegment segment : segments) {
+            for (int block : segment.blocksFor(userId)) {
+                if (segment.minId(block) < beforeId) {
+                    candidates.add(new BlockRef(segment, block));
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(BlockRef::maxId).reversed());
+
+        PriorityQueue<ArchivedOrder> page = new PriorityQueue<>(limit + 1,
+                Comparator.comparingLong(ArchivedOrder::getId));
+        for (BlockRef candidate : candidates) {
+            if (page.size() == limit && candidate.maxId() < page.peek().getId()) {
+                break;
+            }
+            for (ArchivedOrder order : block(candidate.segment(), candidate.block())) {
+                if (order.getUserId() == userId && order.getId() < beforeId) {
+                    page.offer(order);
+                    if (page.size() > limit) {
+                        page.poll();
+                    }
+                }
+            }
+        }
+        List<ArchivedOrder> orders = new ArrayList<>(page);
+        orders.sort(Comparator.comparingLong(ArchivedOrder::getId).reversed());
+        return orders;
+    }
+
+    public Map<String, Object> stats() {
+        long orders = 0;
+        long blockCount = 0;
+        long raw = 0;
+        long compressed = 0;
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        List<OrderSegment> segments = this.segments;
+        for (OrderSegment segment : segments) {
+            orders += segment.orderCount();
+            blockCount += segment.blockCount();
+            raw += segment.rawBytes();
+            compressed += segment.compressedBytes();
+            oldest = Math.min(oldest, segment.oldestCreated());
+            newest = Math.max(newest, segment.newestCreated());
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("segments", segments.size());
+        result.put("merges", merges);
+        result.put("blocks", blockCount);
+        result.put("orders", orders);
+        result.put("rawBytes", raw);
+        result.put("compressedBytes", compressed);
+        result.put("oldestOrder", orders == 0 ? null : Instant.ofEpochMilli(oldest).toString());
+        result.put("newestOrder", orders == 0 ? null : Instant.ofEpochMilli(newest).toString());
+        result.put("blockCacheHitRate", blocks.stats().hitRate());
+        return result;
+    }
+
+    /**
+     * Merges the trailing run of segments below the target size once it is
+     * {@code merge-factor} long. The merged segment replaces the run in one
+     * swap; the run's files are deleted at the next merge, by when no reader
+     * can still be inside them.
+     */
+    private void compact() throws IOException {
+        for (Path path : retired) {
+            Files.deleteIfExists(path);
+        }
+        retired.clear();
+
+        List<OrderSegment> current = segments;
+        int start = current.size();
+        while (start > 0 && current.get(start - 1).orderCount() < segmentTargetOrders) {
+            start--;
+        }
+        if (current.size() - start < mergeFactor) {
+            return;
+        }
+        List<OrderSegment> run = current.subList(start, current.size());
+        List<ArchivedOrder> orders = new ArrayList<>();
+        for (OrderSegment segment : run) {
+            orders.addAll(segment.readAll());
+        }
+        Path path = nextPath();
+        OrderSegment merged = OrderSegment.write(path, orders, ordersPerBlock);
+        List<OrderSegment> updated = new ArrayList<>(current.subList(0, start));
+        updated.add(merged);
+        segments = List.copyOf(updated);
+        run.forEach(segment -> retired.add(segment.path()));
+        merges++;
+        log.info("Merged {} order archive segments into {} ({} orders)", run.size(), path, merged.orderCount());
+    }
+
+    private Path nextPath() {
+        return directory.resolve(String.format("segment-%010d.seg", nextSegment++));
+    }
+
+    private Optional<ArchivedOrder> find(OrderSegment segment, long orderId) {
+        int block = segment.blockOf(orderId);
+        if (block >= 0) {
+            for (ArchivedOrder order : block(segment, block)) {
+                if (order.getId() == orderId) {
+                    return Optional.of(order);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private List<ArchivedOrder> block(OrderSegment segment, int block) {
+        return blocks.get(segment.path() + "#" + block, key -> {
+            try {
+                return segment.readBlock(block);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring("segment-".length(), name.length() - ".seg".length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private record BlockRef(OrderSegment segment, int block) {
+        long maxId() {
+            return segment.maxId(block);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.shopnow.archive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves orders older than {@code shopnow.archive.max-age} from the hot tables
+ * into the {@link OrderArchive}. Each run takes the oldest eligible orders in
+ * chunks: a chunk is first written to a durable segment and only then deleted
+ * from {@code orders}, {@code order_items} and {@code order_events}. A crash in
+ * between leaves the chunk in both places; the next run finds those ids already
+ * archived and only deletes them. An order with an unprocessed outbox event is
+ * left alone until the event has been handled, and so are the same user's newer
+ * orders: order history reads hot orders first and relies on every archived
+ * order of a user being older than all of that user's hot ones.
+ */
+@Component
+public class OrderArchiver {
+    private static final Logger log = LoggerFactory.getLogger(OrderArchiver.class);
+
+    private static final String CANDIDATES_SQL =
+            "SELECT o.id, o.order_number, o.user_id, o.total, o.status, o.shipping_address, o.payment_method, "
+                    + "o.created_at, o.idempotency_key FROM orders o WHERE o.created_at < ? "
+                    + "AND NOT EXISTS (SELECT 1 FROM order_events e JOIN orders p ON p.id = e.order_id "
+                    + "WHERE e.status = 'PENDING' AND p.user_id = o.user_id AND p.id <= o.id) "
+                    + "ORDER BY o.created_at LIMIT ?";
+    private static final String LINES_SQL =
+            "SELECT order_id, product_id, quantity, price FROM order_items WHERE order_id IN (%s)";
+    private static final String DELETE_EVENTS_SQL = "DELETE FROM order_events WHERE order_id IN (%s)";
+    private static final String DELETE_ITEMS_SQL = "DELETE FROM order_items WHERE order_id IN (%s)";
+    private static final String DELETE_ORDERS_SQL = "DELETE FROM orders WHERE id IN (%s)";
+
+    private final OrderArchive archive;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration maxAge;
+    private final int chunkSize;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong archived = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public OrderArchiver(
+            OrderArchive archive,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${shopnow.archive.max-age:90d}") Duration maxAge,
+            @Value("${shopnow.archive.chunk-size:5000}") int chunkSize) {
+        this.archive = archive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAge = maxAge;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Scheduled(fixedDelayString = "${shopnow.archive.interval:PT1H}",
+               initialDelayString = "${shopnow.archive.interval:PT1H}")
+    public void scheduledRun() {
+        if (archive.isEnabled()) {
+            try {
+                run();
+            } catch (RuntimeException e) {
+                log.error("Order archival run failed", e);
+            }
+        }
+    }
+
+    /** Archives every eligible order and returns how many were moved. */
+    public synchronized int run() {
+        if (!archive.isEnabled()) {
+            throw new RuntimeException("Order archive is disabled");
+        }
+        runs.incrementAndGet();
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        int moved = 0;
+        while (true) {
+            List<ArchivedOrder> chunk = loadChunk(cutoff);
+            if (chunk.isEmpty()) {
+                return moved;
+            }
+            List<ArchivedOrder> fresh = new ArrayList<>(chunk.size());
+            List<Long> ids = new ArrayList<>(chunk.size());
+            for (ArchivedOrder order : chunk) {
+                ids.add(order.getId());
+                if (!archive.contains(order.getId())) {
+                    fresh.add(order);
+                }
+            }
+            try {
+                archive.append(fresh);
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                throw new RuntimeException("Could not write order archive segment", e);
+            }
+            transactionTemplate.executeWithoutResult(status -> delete(ids));
+            moved += fresh.size();
+            archived.addAndGet(fresh.size());
+            if (chunk.size() < chunkSize) {
+                return moved;
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>(archive.stats());
+        result.put("maxAge", maxAge.toString());
+        result.put("runs", runs.get());
+        result.put("archivedSinceStart", archived.get());
+        result.put("failures", failures.get());
+        return result;
+    }
+
+    private List<ArchivedOrder> loadChunk(LocalDateTime cutoff) {
+        List<Object[]> rows = jdbcTemplate.query(CANDIDATES_SQL, (rs, rowNum) -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            return new Object[]{rs.getLong("id"), rs.getString("order_number"), rs.getLong("user_id"),
+                    rs.getDouble("total"), rs.getString("status"), rs.getString("shipping_address"),
+                    rs.getString("payment_method"), createdAt == null ? null : createdAt.toLocalDateTime(),
+                    rs.getString("idempotency_key")};
+        }, Timestamp.valueOf(cutoff), chunkSize);
+        if (rows.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Object> ids = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            ids.add(row[0]);
+        }
+        Map<Long, List<ArchivedOrder.Line>> lines = new HashMap<>();
+        jdbcTemplate.query(String.format(LINES_SQL, placeholders(ids.size())), rs -> {
+            lines.computeIfAbsent(rs.getLong("order_id"), id -> new ArrayList<>())
+                    .add(new ArchivedOrder.Line(rs.getLong("product_id"), rs.getInt("quantity"),
+                            rs.getDouble("price")));
+        }, ids.toArray());
+
+        List<ArchivedOrder> orders = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            long id = (Long) row[0];
+            orders.add(new ArchivedOrder(id, (String) row[1], (Long) row[2], (Double) row[3], (String) row[4],
+                    (String) row[5], (String) row[6], (LocalDateTime) row[7], (String) row[8],
+                    lines.getOrDefault(id, Collections.emptyList())));
+        }
+        return orders;
+    }
+
+    private void delete(List<Long> ids) {
+        Object[] args = ids.toArray();
+        String in = placeholders(ids.size());
+        jdbcTemplate.update(String.format(DELETE_EVENTS_SQL, in), args);
+        jdbcTemplate.update(String.format(DELETE_ITEMS_SQL, in), args);
+        jdbcTemplate.update(String.format(DELETE_ORDERS_SQL, in), args);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
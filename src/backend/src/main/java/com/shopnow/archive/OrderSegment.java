@@ -0,0 +1,511 @@
+package com.shopnow.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One immutable archive segment. Orders are sorted by user, creation time and
+ * id, and stored in independently deflated blocks so a lookup only inflates the
+ * blocks it needs. The footer holds a sparse block index (offset, lengths,
+ * CRC32 and the user and creation-time range of each block), a sorted order id
+ * to block map and, from format 2, the orders' idempotency keys as sorted
+ * (user, key hash, order id) entries; all are kept in memory while the segment
+ * is open.
+ *
+ * <p>Layout: magic and format version, the blocks, the footer, then the footer
+ * offset and the magic again as a trailer.
+ */
+final class OrderSegment {
+    static final int MAGIC = 0x534E4F41;
+    static final int FORMAT_VERSION = 2;
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    static final Comparator<ArchivedOrder> ORDERING = Comparator.comparingLong(ArchivedOrder::getUserId)
+            .thenComparing(ArchivedOrder::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(ArchivedOrder::getId);
+    private static final Comparator<long[]> KEY_ORDER = Comparator.<long[]>comparingLong(entry -> entry[0])
+            .thenComparingLong(entry -> entry[1]);
+
+    private final Path path;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int[] checksums;
+    private final long[] minUsers;
+    private final long[] maxUsers;
+    private final long[] minCreated;
+    private final long[] maxCreated;
+    private final long[] orderIds;
+    private final int[] orderBlocks;
+    private final long[] minIds;
+    private final long[] maxIds;
+    private final long[] keyUsers;
+    private final long[] keyHashes;
+    private final long[] keyOrders;
+
+    private OrderSegment(Path path, long[] offsets, int[] compressedLengths, int[] rawLengths, int[] checksums,
+                         long[] minUsers, long[] maxUsers, long[] minCreated, long[] maxCreated,
+                         long[] orderIds, int[] orderBlocks, long[] keyUsers, long[] keyHashes, long[] keyOrders) {
+        this.path = path;
+        this.offsets = offsets;
+        this.compressedLengths = compressedLengths;
+        this.rawLengths = rawLengths;
+        this.checksums = checksums;
+        this.minUsers = minUsers;
+        this.maxUsers = maxUsers;
+        this.minCreated = minCreated;
+        this.maxCreated = maxCreated;
+        this.orderIds = orderIds;
+        this.orderBlocks = orderBlocks;
+        this.keyUsers = keyUsers;
+        this.keyHashes = keyHashes;
+        this.keyOrders = keyOrders;
+        this.minIds = new long[offsets.length];
+        this.maxIds = new long[offsets.length];
+        Arrays.fill(minIds, Long.MAX_VALUE);
+        Arrays.fill(maxIds, Long.MIN_VALUE);
+        for (int i = 0; i < orderIds.length; i++) {
+            minIds[orderBlocks[i]] = Math.min(minIds[orderBlocks[i]], orderIds[i]);
+            maxIds[orderBlocks[i]] = Math.max(maxIds[orderBlocks[i]], orderIds[i]);
+        }
+    }
+
+    /** Writes {@code orders} (in any order) to a new segment at {@code path} and opens it. */
+    static OrderSegment write(Path path, List<ArchivedOrder> orders, int ordersPerBlock) throws IOException {
+        List<ArchivedOrder> sorted = new ArrayList<>(orders);
+        sorted.sort(ORDERING);
+        int blocks = (sorted.size() + ordersPerBlock - 1) / ordersPerBlock;
+        long[] offsets = new long[blocks];
+        int[] compressedLengths = new int[blocks];
+        int[] rawLengths = new int[blocks];
+        int[] checksums = new int[blocks];
+        long[] minUsers = new long[blocks];
+        long[] maxUsers = new long[blocks];
+        long[] minCreated = new long[blocks];
+        long[] maxCreated = new long[blocks];
+        long[][] idBlockPairs = new long[sorted.size()][];
+
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "segment", ".tmp");
+        Deflater deflater = new Deflater();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES * 2).putInt(MAGIC).putInt(FORMAT_VERSION).flip());
+            for (int block = 0; block < blocks; block++) {
+                int from = block * ordersPerBlock;
+                List<ArchivedOrder> slice = sorted.subList(from, Math.min(sorted.size(), from + ordersPerBlock));
+                byte[] raw = encode(slice);
+                CRC32 crc = new CRC32();
+                crc.update(raw);
+                byte[] compressed = deflate(deflater, raw);
+
+                offsets[block] = channel.position();
+                compressedLengths[block] = compressed.length;
+                rawLengths[block] = raw.length;
+                checksums[block] = (int) crc.getValue();
+                minUsers[block] = slice.get(0).getUserId();
+                maxUsers[block] = slice.get(slice.size() - 1).getUserId();
+                minCreated[block] = Long.MAX_VALUE;
+                maxCreated[block] = Long.MIN_VALUE;
+                for (int i = 0; i < slice.size(); i++) {
+                    ArchivedOrder order = slice.get(i);
+                    long created = epochMillis(order.getCreatedAt());
+                    minCreated[block] = Math.min(minCreated[block], created);
+                    maxCreated[block] = Math.max(maxCreated[block], created);
+                    idBlockPairs[from + i] = new long[]{order.getId(), block};
+                }
+                channel.write(ByteBuffer.wrap(compressed));
+            }
+
+            Arrays.sort(idBlockPairs, Comparator.comparingLong(pair -> pair[0]));
+            long[] orderIds = new long[idBlockPairs.length];
+            int[] orderBlocks = new int[idBlockPairs.length];
+            for (int i = 0; i < idBlockPairs.length; i++) {
+                orderIds[i] = idBlockPairs[i][0];
+                orderBlocks[i] = (int) idBlockPairs[i][1];
+            }
+
+            long[][] keyEntries = sorted.stream()
+                    .filter(order -> order.getIdempotencyKey() != null)
+                    .map(order -> new long[]{order.getUserId(), keyHash(order.getIdempotencyKey()), order.getId()})
+                    .sorted(KEY_ORDER)
+                    .toArray(long[][]::new);
+            long[] keyUsers = new long[keyEntries.length];
+            long[] keyHashes = new long[keyEntries.length];
+            long[] keyOrders = new long[keyEntries.length];
+            for (int i = 0; i < keyEntries.length; i++) {
+                keyUsers[i] = keyEntries[i][0];
+                keyHashes[i] = keyEntries[i][1];
+                keyOrders[i] = keyEntries[i][2];
+            }
+
+            long footerOffset = channel.position();
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(footerBytes);
+            footer.writeInt(blocks);
+            for (int block = 0; block < blocks; block++) {
+                footer.writeLong(offsets[block]);
+                footer.writeInt(compressedLengths[block]);
+                footer.writeInt(rawLengths[block]);
+                footer.writeInt(checksums[block]);
+                footer.writeLong(minUsers[block]);
+                footer.writeLong(maxUsers[block]);
+                footer.writeLong(minCreated[block]);
+                footer.writeLong(maxCreated[block]);
+            }
+            footer.writeInt(orderIds.length);
+            for (int i = 0; i < orderIds.length; i++) {
+                footer.writeLong(orderIds[i]);
+                footer.writeInt(orderBlocks[i]);
+            }
+            footer.writeInt(keyUsers.length);
+            for (int i = 0; i < keyUsers.length; i++) {
+                footer.writeLong(keyUsers[i]);
+                footer.writeLong(keyHashes[i]);
+                footer.writeLong(keyOrders[i]);
+            }
+            footer.writeLong(footerOffset);
+            footer.writeInt(MAGIC);
+            footer.flush();
+            channel.write(ByteBuffer.wrap(footerBytes.toByteArray()));
+            channel.force(true);
+
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            return new OrderSegment(path, offsets, compressedLengths, rawLengths, checksums,
+                    minUsers, maxUsers, minCreated, maxCreated, orderIds, orderBlocks, keyUsers, keyHashes, keyOrders);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Reads a segment's footer; blocks are read on demand. Format 1 segments have no key index. */
+    static OrderSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES * 2);
+            channel.read(header, 0);
+            header.flip();
+            if (size < Integer.BYTES * 2 + TRAILER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not an order archive segment: " + path);
+            }
+            int format = header.getInt();
+            if (format < 1 || format > FORMAT_VERSION) {
+                throw new IOException("Unsupported order archive segment format " + format + ": " + path);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            channel.read(trailer, size - TRAILER_SIZE);
+            trailer.flip();
+            long footerOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC || footerOffset < 0 || footerOffset > size - TRAILER_SIZE) {
+                throw new IOException("Truncated order archive segment: " + path);
+            }
+            ByteBuffer footer = ByteBuffer.allocate((int) (size - TRAILER_SIZE - footerOffset));
+            channel.read(footer, footerOffset);
+            footer.flip();
+
+            int blocks = footer.getInt();
+            long[] offsets = new long[blocks];
+            int[] compressedLengths = new int[blocks];
+            int[] rawLengths = new int[blocks];
+            int[] checksums = new int[blocks];
+            long[] minUsers = new long[blocks];
+            long[] maxUsers = new long[blocks];
+            long[] minCreated = new long[blocks];
+            long[] maxCreated = new long[blocks];
+            for (int block = 0; block < blocks; block++) {
+                offsets[block] = footer.getLong();
+                compressedLengths[block] = footer.getInt();
+                rawLengths[block] = footer.getInt();
+                checksums[block] = footer.getInt();
+                minUsers[block] = footer.getLong();
+                maxUsers[block] = footer.getLong();
+                minCreated[block] = footer.getLong();
+                maxCreated[block] = footer.getLong();
+            }
+            int count = footer.getInt();
+            long[] orderIds = new long[count];
+            int[] orderBlocks = new int[count];
+            for (int i = 0; i < count; i++) {
+                orderIds[i] = footer.getLong();
+                orderBlocks[i] = footer.getInt();
+            }
+            int keys = format >= 2 ? footer.getInt() : 0;
+            long[] keyUsers = new long[keys];
+            long[] keyHashes = new long[keys];
+            long[] keyOrders = new long[keys];
+            for (int i = 0; i < keys; i++) {
+                keyUsers[i] = footer.getLong();
+                keyHashes[i] = footer.getLong();
+                keyOrders[i] = footer.getLong();
+            }
+            return new OrderSegment(path, offsets, compressedLengths, rawLengths, checksums,
+                    minUsers, maxUsers, minCreated, maxCreated, orderIds, orderBlocks, keyUsers, keyHashes, keyOrders);
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int blockCount() {
+        return offsets.length;
+    }
+
+    int orderCount() {
+        return orderIds.length;
+    }
+
+    long compressedBytes() {
+        long total = 0;
+        for (int length : compressedLengths) {
+            total += length;
+        }
+        return total;
+    }
+
+    long rawBytes() {
+        long total = 0;
+        for (int length : rawLengths) {
+            total += length;
+        }
+        return total;
+    }
+
+    boolean contains(long orderId) {
+        return Arrays.binarySearch(orderIds, orderId) >= 0;
+    }
+
+    /** Returns the block holding the order, or -1. */
+    int blockOf(long orderId) {
+        int index = Arrays.binarySearch(orderIds, orderId);
+        return index < 0 ? -1 : orderBlocks[index];
+    }
+
+    /** True when every order of {@code other} is also in this segment. */
+    boolean covers(OrderSegment other) {
+        for (long orderId : other.orderIds) {
+            if (!contains(orderId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long minId(int block) {
+        return minIds[block];
+    }
+
+    long maxId(int block) {
+        return maxIds[block];
+    }
+
+    /** Ids of the user's orders whose idempotency key hashes like {@code key}; callers compare the key itself. */
+    List<Long> ordersWithKey(long userId, String key) {
+        long hash = keyHash(key);
+        int low = 0;
+        int high = keyUsers.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keyUsers[middle] < userId || (keyUsers[middle] == userId && keyHashes[middle] < hash)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<Long> orders = new ArrayList<>(1);
+        for (int i = low; i < keyUsers.length && keyUsers[i] == userId && keyHashes[i] == hash; i++) {
+            orders.add(keyOrders[i]);
+        }
+        return orders;
+    }
+
+    /** Blocks that may hold orders of the user; blocks are in user order, so the scan stops early. */
+    List<Integer> blocksFor(long userId) {
+        List<Integer> blocks = new ArrayList<>();
+        for (int block = 0; block < offsets.length; block++) {
+            if (minUsers[block] > userId) {
+                break;
+            }
+            if (maxUsers[block] >= userId) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    long oldestCreated() {
+        return Arrays.stream(minCreated).min().orElse(Long.MAX_VALUE);
+    }
+
+    long newestCreated() {
+        return Arrays.stream(maxCreated).max().orElse(Long.MIN_VALUE);
+    }
+
+    List<ArchivedOrder> readBlock(int block) throws IOException {
+        byte[] compressed = new byte[compressedLengths[block]];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(compressed);
+            long position = offsets[block];
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Truncated block " + block + " in " + path);
+                }
+                position += read;
+            }
+        }
+        byte[] raw = inflate(compressed, rawLengths[block]);
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        if ((int) crc.getValue() != checksums[block]) {
+            throw new IOException("Block " + block + " in " + path + " failed its checksum");
+        }
+        return decode(raw);
+    }
+
+    List<ArchivedOrder> readAll() throws IOException {
+        List<ArchivedOrder> orders = new ArrayList<>(orderIds.length);
+        for (int block = 0; block < offsets.length; block++) {
+            orders.addAll(readBlock(block));
+        }
+        return orders;
+    }
+
+    static long epochMillis(LocalDateTime time) {
+        return time == null ? 0 : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /** 64-bit FNV-1a of the key's UTF-8 bytes; persisted, so it must not change. */
+    static long keyHash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static byte[] encode(List<ArchivedOrder> orders) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(orders.size());
+        for (ArchivedOrder order : orders) {
+            out.writeLong(order.getId());
+            writeString(out, order.getOrderNumber());
+            out.writeLong(order.getUserId());
+            out.writeDouble(order.getTotal());
+            writeString(out, order.getStatus());
+            writeString(out, order.getShippingAddress());
+            writeString(out, order.getPaymentMethod());
+            out.writeBoolean(order.getCreatedAt() != null);
+            if (order.getCreatedAt() != null) {
+                out.writeLong(order.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(order.getCreatedAt().getNano());
+            }
+            writeString(out, order.getIdempotencyKey());
+            out.writeInt(order.getLines().size());
+            for (ArchivedOrder.Line line : order.getLines()) {
+                out.writeLong(line.getProductId());
+                out.writeInt(line.getQuantity());
+                out.writeDouble(line.getPrice());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<ArchivedOrder> decode(byte[] raw) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        int count = in.readInt();
+        List<ArchivedOrder> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            String orderNumber = readString(in);
+            long userId = in.readLong();
+            double total = in.readDouble();
+            String status = readString(in);
+            String shippingAddress = readString(in);
+            String paymentMethod = readString(in);
+            LocalDateTime createdAt = in.readBoolean()
+                    ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC)
+                    : null;
+            String idempotencyKey = readString(in);
+            int lineCount = in.readInt();
+            List<ArchivedOrder.Line> lines = new ArrayList<>(lineCount);
+            for (int j = 0; j < lineCount; j++) {
+                lines.add(new ArchivedOrder.Line(in.readLong(), in.readInt(), in.readDouble()));
+            }
+            orders.add(new ArchivedOrder(id, orderNumber, userId, total, status, shippingAddress, paymentMethod,
+                    createdAt, idempotencyKey, lines));
+        }
+        return orders;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, rawLength - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != rawLength) {
+                throw new IOException("Corrupt block: expected " + rawLength + " bytes, inflated " + length);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -1,54 +1,122 @@
 package com.shopnow.auth;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
+import com.shopnow.model.User;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Issues and verifies signed tokens. Verification uses one immutable parser
+ * shared by all threads, and verified claims are cached per token until the
+ * token's own expiry, so a client reusing its token is only parsed and
+ * signature-checked once. Invalid tokens are never cached.
+ */
 @Component
 public class JwtTokenProvider {
     private final Key key;
     private final long expiration;
+    private final JwtParser parser;
+    private final Cache<String, Claims> verified;
 
     public JwtTokenProvider(
             @Value("${jwt.secret}") String secret,
-            @Value("${jwt.expiration}") long expiration) {
+            @Value("${jwt.expiration}") long expiration,
+            @Value("${jwt.claims-cache.max-size:10000}") long claimsCacheSize) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
         this.expiration = expiration;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        Date expiresAt = claims.getExpiration();
+                        long millis = expiresAt == null ? expiration : expiresAt.getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
     }
 
-    public String generateToken(String email) {
+    /** Issues a token carrying the user's id, name and authorities, so requests can be authenticated from it alone. */
+    public String generateToken(User user, Collection<? extends GrantedAuthority> authorities) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration);
 
         return Jwts.builder()
-                .setSubject(email)
+                .setSubject(user.getEmail())
+                .claim(JwtUserPrincipal.USER_ID, user.getId())
+                .claim(JwtUserPrincipal.AUTHORITIES, AuthorityUtils.authorityListToSet(authorities))
+                .claim(JwtUserPrincipal.FIRST_NAME, user.getFirstName())
+                .claim(JwtUserPrincipal.LAST_NAME, user.getLastName())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(key)
                 .compact();
     }
 
-    public String getEmailFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /** Returns the token's verified claims, or null when it is malformed, badly signed or expired. */
+    public Claims getVerifiedClaims(String token) {
+        Claims claims = verified.getIfPresent(token);
+        if (claims != null) {
+            return claims;
+        }
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        verified.put(token, claims);
+        return claims;
+    }
 
+    /** Returns the user the token was issued to, or null when the token is invalid or predates user id claims. */
+    public JwtUserPrincipal getPrincipal(String token) {
+        Claims claims = getVerifiedClaims(token);
+        return claims == null ? null : JwtUserPrincipal.fromClaims(claims);
+    }
+
+    public String getEmailFromToken(String token) {
+        Claims claims = getVerifiedClaims(token);
+        if (claims == null) {
+            throw new JwtException("Invalid token");
+        }
         return claims.getSubject();
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return getVerifiedClaims(token) != null;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cachedTokens", verified.estimatedSize());
+        result.put("hitRate", verified.stats().hitRate());
+        result.put("evictions", verified.stats().evictionCount());
+        return result;
     }
-}
\ No newline at end of file
+}
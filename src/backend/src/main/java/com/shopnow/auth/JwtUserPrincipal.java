@@ -0,0 +1,59 @@
+package com.shopnow.auth;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The authenticated user as described by a verified token. Everything a
+ * request needs to know about its caller is read from the token's claims,
+ * so authenticating a request never touches the users table.
+ */
+@Getter
+public class JwtUserPrincipal implements Principal {
+    static final String USER_ID = "uid";
+    static final String AUTHORITIES = "auth";
+    static final String FIRST_NAME = "given_name";
+    static final String LAST_NAME = "family_name";
+
+    private final Long id;
+    private final String email;
+    private final String firstName;
+    private final String lastName;
+    private final List<GrantedAuthority> authorities;
+
+    private JwtUserPrincipal(Long id, String email, String firstName, String lastName,
+                             List<GrantedAuthority> authorities) {
+        this.id = id;
+        this.email = email;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.authorities = authorities;
+    }
+
+    /** Returns the principal carried by the claims, or null for tokens issued without a user id. */
+    static JwtUserPrincipal fromClaims(Claims claims) {
+        Number id = claims.get(USER_ID, Number.class);
+        if (id == null) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        Collection<?> names = claims.get(AUTHORITIES, Collection.class);
+        if (names != null) {
+            names.forEach(name -> authorities.add(new SimpleGrantedAuthority(name.toString())));
+        }
+        return new JwtUserPrincipal(id.longValue(), claims.getSubject(), claims.get(FIRST_NAME, String.class),
+                claims.get(LAST_NAME, String.class), List.copyOf(authorities));
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,177 @@
+package com.shopnow.cart;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only redo log of write-behind cart mutations. Every record holds the
+ * absolute outcome of a mutation (a line's new quantity, its removal or a
+ * cleared cart), so replaying a record that was already flushed is harmless.
+ * The log is split into numbered segments: a flush starts a new segment before
+ * collecting dirty carts and deletes the older ones once it has committed. A
+ * single cart's flush logs {@link #FLUSHING} when it snapshots the cart and
+ * {@link #FLUSHED} once that snapshot has committed; the pair cancels only what
+ * was logged for the cart before the first marker.
+ */
+final class CartJournal implements Closeable {
+    static final byte SET = 1;
+    static final byte REMOVE = 2;
+    static final byte CLEAR = 3;
+    static final byte FLUSHED = 4;
+    static final byte FLUSHING = 5;
+
+    private static final String SEGMENT_GLOB = "journal-*.log";
+    private static final int RECORD_SIZE = 1 + Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private FileChannel channel;
+    private long segment;
+    private long written;
+
+    CartJournal(Path directory, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        List<Path> existing = segments();
+        segment = existing.isEmpty() ? 1 : number(existing.get(existing.size() - 1)) + 1;
+        channel = open(segment);
+    }
+
+    synchronized void append(byte type, long userId, long productId, int quantity) {
+        record.clear();
+        record.put(type).putLong(userId).putLong(productId).putInt(quantity).flip();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to cart journal", e);
+        }
+        written += RECORD_SIZE;
+    }
+
+    /** Starts a new segment unless the current one is empty. Returns the number of the current segment. */
+    synchronized long rotate() {
+        if (written > 0) {
+            try {
+                channel.close();
+                channel = open(++segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not rotate cart journal", e);
+            }
+            written = 0;
+        }
+        return segment;
+    }
+
+    /** Deletes the segments older than {@code current}, whose records have all been committed. */
+    void deleteBefore(long current) {
+        delete(segmentsBefore(current));
+    }
+
+    void delete(List<Path> segments) {
+        for (Path path : segments) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete cart journal segment " + path, e);
+            }
+        }
+    }
+
+    /** Renames segments out of the log so later flushes neither replay nor delete them. */
+    void setAside(List<Path> segments) {
+        for (Path path : segments) {
+            try {
+                Files.move(path, path.resolveSibling(path.getFileName() + ".failed"));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not set aside cart journal segment " + path, e);
+            }
+        }
+    }
+
+    /** Returns the finished segments older than {@code current} in log order. */
+    List<Path> segmentsBefore(long current) {
+        List<Path> older = new ArrayList<>();
+        for (Path path : segments()) {
+            if (number(path) < current) {
+                older.add(path);
+            }
+        }
+        return older;
+    }
+
+    private List<Path> segments() {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+            stream.forEach(paths::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list cart journal " + directory, e);
+        }
+        paths.sort((a, b) -> Long.compare(number(a), number(b)));
+        return paths;
+    }
+
+    synchronized long currentSegment() {
+        return segment;
+    }
+
+    /** Reads every complete record of a segment; a record torn by a crash mid-write ends the segment. */
+    static void read(Path path, RecordHandler handler) throws IOException {
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            while (true) {
+                byte type;
+                long userId;
+                long productId;
+                int quantity;
+                try {
+                    type = in.readByte();
+                    userId = in.readLong();
+                    productId = in.readLong();
+                    quantity = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                handler.accept(type, userId, productId, quantity);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private FileChannel open(long number) throws IOException {
+        return FileChannel.open(directory.resolve(String.format("journal-%010d.log", number)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long number(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+
+    interface RecordHandler {
+        void accept(byte type, long userId, long productId, int quantity);
+    }
+}
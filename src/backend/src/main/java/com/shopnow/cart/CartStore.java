@@ -0,0 +1,575 @@
+package com.shopnow.cart;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind store of live carts keyed by user id. Mutations are applied to
+ * memory under a per-stripe lock and only mark the cart dirty; dirty carts are
+ * coalesced and written to {@code cart_items} in one batched transaction per
+ * flush. Flushes run in a transaction of their own, and a failed flush
+ * re-queues its carts, so a mutation is only dropped from the pending set once
+ * the transaction that wrote it has committed. Every mutation is also appended
+ * to a {@link CartJournal} before it is acknowledged; the journal is replayed
+ * on startup, so a process crash does not lose cart writes that had not been
+ * flushed yet. Surviving power loss as well needs {@code journal-fsync}.
+ */
+@Component
+public class CartStore implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(CartStore.class);
+
+    private static final String LOAD_SQL =
+            "SELECT product_id, quantity FROM cart_items WHERE user_id = ? ORDER BY id";
+    private static final String UPSERT_SQL =
+            "MERGE INTO cart_items (user_id, product_id, quantity) KEY (user_id, product_id) VALUES (?, ?, ?)";
+    private static final String DELETE_ITEM_SQL =
+            "DELETE FROM cart_items WHERE user_id = ? AND product_id = ?";
+    private static final String DELETE_CART_SQL =
+            "DELETE FROM cart_items WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CartJournal journal;
+    private final boolean enabled;
+    private final int maxDirtyCarts;
+    private final long idleTimeoutMillis;
+
+    private final ReentrantLock[] stripes;
+    private final Map<Long, LiveCart> carts = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong flushedCarts = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    public CartStore(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${shopnow.cart.write-behind.enabled:false}") boolean enabled,
+            @Value("${shopnow.cart.write-behind.stripes:64}") int stripeCount,
+            @Value("${shopnow.cart.write-behind.max-dirty-carts:10000}") int maxDirtyCarts,
+            @Value("${shopnow.cart.write-behind.idle-timeout:30m}") Duration idleTimeout,
+            @Value("${shopnow.cart.write-behind.journal-directory:data/cart-journal}") String journalDirectory,
+            @Value("${shopnow.cart.write-behind.journal-fsync:false}") boolean journalFsync) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        // Never joins a caller's transaction: a flush must not be undone by a rollback that drops its pending state.
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.journal = enabled ? new CartJournal(Path.of(journalDirectory), journalFsync) : null;
+        this.enabled = enabled;
+        this.maxDirtyCarts = maxDirtyCarts;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Returns product id to quantity in insertion order. */
+    public Map<Long, Integer> items(long userId) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            return new LinkedHashMap<>(cart(userId).items);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void set(long userId, long productId, int quantity) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            LiveCart cart = cart(userId);
+            cart.items.put(productId, quantity);
+            cart.touched.add(productId);
+            markDirty(userId, cart);
+            journal.append(CartJournal.SET, userId, productId, quantity);
+        } finally {
+            lock.unlock();
+        }
+        flushIfBacklogged();
+    }
+
+    /** Adds {@code delta} to a line, removing it when the result drops to zero. Returns the new quantity. */
+    public int add(long userId, long productId, int delta) {
+        ReentrantLock lock = stripe(userId);
+        int quantity;
+        lock.lock();
+        try {
+            LiveCart cart = cart(userId);
+            quantity = cart.items.getOrDefault(productId, 0) + delta;
+            if (quantity > 0) {
+                cart.items.put(productId, quantity);
+            } else {
+                cart.items.remove(productId);
+                quantity = 0;
+            }
+            cart.touched.add(productId);
+            markDirty(userId, cart);
+            logLine(userId, productId, quantity > 0 ? quantity : null);
+        } finally {
+            lock.unlock();
+        }
+        flushIfBacklogged();
+        return quantity;
+    }
+
+    /**
+     * Runs {@code mutation} against a copy of the cart under the cart's lock and
+     * installs the result, marking only the lines it changed. Returns the new cart.
+     */
+    public Map<Long, Integer> apply(long userId, Consumer<Map<Long, Integer>> mutation) {
+        ReentrantLock lock = stripe(userId);
+        Map<Long, Integer> updated;
+        lock.lock();
+        try {
+            LiveCart cart = cart(userId);
+            updated = new LinkedHashMap<>(cart.items);
+            mutation.accept(updated);
+            boolean changed = false;
+            for (Long productId : cart.items.keySet()) {
+                if (!updated.containsKey(productId)) {
+                    cart.touched.add(productId);
+                    logLine(userId, productId, null);
+                    changed = true;
+                }
+            }
+            for (Map.Entry<Long, Integer> line : updated.entrySet()) {
+                if (!line.getValue().equals(cart.items.get(line.getKey()))) {
+                    cart.touched.add(line.getKey());
+                    logLine(userId, line.getKey(), line.getValue());
+                    changed = true;
+                }
+            }
+            if (changed) {
+                cart.items.clear();
+                cart.items.putAll(updated);
+                markDirty(userId, cart);
+            }
+        } finally {
+            lock.unlock();
+        }
+        flushIfBacklogged();
+        return updated;
+    }
+
+    public void remove(long userId, long productId) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            LiveCart cart = cart(userId);
+            if (cart.items.remove(productId) != null) {
+                cart.touched.add(productId);
+                markDirty(userId, cart);
+                logLine(userId, productId, null);
+            }
+        } finally {
+            lock.unlock();
+        }
+        flushIfBacklogged();
+    }
+
+    public void clear(long userId) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            LiveCart cart = cart(userId);
+            cart.items.clear();
+            cart.touched.clear();
+            cart.cleared = true;
+            markDirty(userId, cart);
+            journal.append(CartJournal.CLEAR, userId, 0, 0);
+        } finally {
+            lock.unlock();
+        }
+        flushIfBacklogged();
+    }
+
+    /**
+     * Takes the lines a committed checkout removed from the table out of the live
+     * cart; call it after that commit. A line changed since the checkout read it
+     * stays, as do lines added meanwhile, which are still pending and journaled.
+     */
+    public void removeCheckedOut(long userId, Map<Long, Integer> checkedOut) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            LiveCart cart = carts.get(userId);
+            if (cart == null) {
+                return;
+            }
+            checkedOut.forEach((productId, quantity) -> {
+                if (!cart.touched.contains(productId) && quantity.equals(cart.items.get(productId))) {
+                    cart.items.remove(productId);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits the pending changes of one cart before it is read from the table,
+     * e.g. at checkout. Call it outside the reading transaction: the flush commits
+     * on its own. The snapshot is bracketed by journal markers logged under the
+     * cart's lock, so replay drops exactly the records the commit covered and
+     * keeps any mutation that raced with the flush.
+     */
+    public void flush(long userId) {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<PendingCart> pending = collect(List.of(userId), true);
+            if (!pending.isEmpty()) {
+                write(pending);
+                journal.append(CartJournal.FLUSHED, userId, 0, 0);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Replays the journal left by a previous run into {@code cart_items}. Runs once
+     * the schema exists but before the scheduler and web server start, so no cart
+     * is loaded or flushed ahead of it.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        List<Path> segments = journal.segmentsBefore(journal.currentSegment());
+        try {
+            Map<Long, PendingCart> replayed = new LinkedHashMap<>();
+            Map<Long, PendingCart> flushing = new HashMap<>();
+            for (Path segment : segments) {
+                try {
+                    CartJournal.read(segment, (type, userId, productId, quantity) -> {
+                        if (type == CartJournal.FLUSHING) {
+                            // An earlier flush of the cart that never confirmed is folded into this one.
+                            PendingCart snapshot = PendingCart.merge(flushing.remove(userId), replayed.remove(userId));
+                            flushing.put(userId, snapshot != null
+                                    ? snapshot : new PendingCart(userId, false, new LinkedHashMap<>()));
+                            return;
+                        }
+                        if (type == CartJournal.FLUSHED) {
+                            if (flushing.remove(userId) == null) {
+                                // Written by a version that only logged the marker after committing.
+                                replayed.remove(userId);
+                            }
+                            return;
+                        }
+                        PendingCart cart = replayed.computeIfAbsent(userId,
+                                id -> new PendingCart(id, false, new LinkedHashMap<>()));
+                        if (type == CartJournal.CLEAR) {
+                            cart.changes().clear();
+                            replayed.put(userId, new PendingCart(userId, true, cart.changes()));
+                        } else {
+                            cart.changes().put(productId, type == CartJournal.SET ? quantity : null);
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not replay cart journal " + segment, e);
+                }
+            }
+            // A flush that logged its snapshot but never confirmed it may not have committed.
+            flushing.forEach((userId, unconfirmed) ->
+                    replayed.put(userId, PendingCart.merge(unconfirmed, replayed.get(userId))));
+            if (!replayed.isEmpty()) {
+                persist(new ArrayList<>(replayed.values()));
+                log.info("Replayed {} unflushed carts from the cart journal", replayed.size());
+            }
+            journal.delete(segments);
+        } catch (RuntimeException e) {
+            log.error("Cart journal replay failed; keeping its segments as *.failed for inspection", e);
+            journal.setAside(segments);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shopnow.cart.write-behind.flush-interval:PT1S}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushDirty();
+            evictIdle();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (enabled) {
+            flushLock.lock();
+            try {
+                flushDirty();
+            } finally {
+                flushLock.unlock();
+                journal.close();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long oldestDirty = Long.MAX_VALUE;
+        long pendingItems = 0;
+        for (Long userId : dirtyUsers) {
+            LiveCart cart = carts.get(userId);
+            if (cart != null) {
+                oldestDirty = Math.min(oldestDirty, cart.dirtySince);
+                pendingItems += cart.touched.size();
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("liveCarts", carts.size());
+        result.put("dirtyCarts", dirtyUsers.size());
+        result.put("pendingItems", pendingItems);
+        result.put("oldestDirtyMillis", oldestDirty == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldestDirty);
+        result.put("flushes", flushes.get());
+        result.put("failedFlushes", failedFlushes.get());
+        result.put("flushedCarts", flushedCarts.get());
+        result.put("flushedRows", flushedRows.get());
+        result.put("lastFlushMillis", lastFlushMillis);
+        result.put("loads", loads.get());
+        result.put("evictions", evictions.get());
+        return result;
+    }
+
+    private void flushIfBacklogged() {
+        if (dirtyUsers.size() >= maxDirtyCarts && flushLock.tryLock()) {
+            try {
+                flushDirty();
+            } catch (RuntimeException e) {
+                // Already logged and re-queued; the caller's mutation is safe in memory.
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    // Every record in the segments before the rotation is either collected here or already committed.
+    private void flushDirty() {
+        long current = journal.rotate();
+        if (!dirtyUsers.isEmpty()) {
+            write(collect(new ArrayList<>(dirtyUsers), false));
+        }
+        journal.deleteBefore(current);
+    }
+
+    // With markFlushing, a FLUSHING record is logged under the cart's lock, after every record the snapshot holds.
+    private List<PendingCart> collect(List<Long> userIds, boolean markFlushing) {
+        List<PendingCart> pending = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            ReentrantLock lock = stripe(userId);
+            lock.lock();
+            try {
+                LiveCart cart = carts.get(userId);
+                if (cart == null || !dirtyUsers.remove(userId)) {
+                    continue;
+                }
+                Map<Long, Integer> changes = new LinkedHashMap<>();
+                for (Long productId : cart.touched) {
+                    changes.put(productId, cart.items.get(productId));
+                }
+                pending.add(new PendingCart(userId, cart.cleared, changes));
+                if (markFlushing) {
+                    journal.append(CartJournal.FLUSHING, userId, 0, 0);
+                }
+                cart.touched.clear();
+                cart.cleared = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return pending;
+    }
+
+    private void write(List<PendingCart> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        try {
+            int rows = persist(pending);
+            flushes.incrementAndGet();
+            flushedCarts.addAndGet(pending.size());
+            flushedRows.addAndGet(rows);
+            lastFlushMillis = System.currentTimeMillis() - started;
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            log.error("Cart flush of {} carts failed, re-queueing", pending.size(), e);
+            requeue(pending);
+            throw e;
+        }
+    }
+
+    // Writes the carts' changes in one transaction and returns the number of statements batched.
+    private int persist(List<PendingCart> pending) {
+        List<Object[]> clears = new ArrayList<>();
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (PendingCart cart : pending) {
+            if (cart.cleared) {
+                clears.add(new Object[]{cart.userId});
+            }
+            cart.changes.forEach((productId, quantity) -> {
+                if (quantity == null) {
+                    deletes.add(new Object[]{cart.userId, productId});
+                } else {
+                    upserts.add(new Object[]{cart.userId, productId, quantity});
+                }
+            });
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(DELETE_CART_SQL, clears);
+            jdbcTemplate.batchUpdate(DELETE_ITEM_SQL, deletes);
+            jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+        });
+        return clears.size() + deletes.size() + upserts.size();
+    }
+
+    private void requeue(List<PendingCart> pending) {
+        for (PendingCart failed : pending) {
+            ReentrantLock lock = stripe(failed.userId);
+            lock.lock();
+            try {
+                LiveCart cart = carts.get(failed.userId);
+                if (cart == null) {
+                    continue;
+                }
+                if (failed.cleared) {
+                    cart.cleared = true;
+                    cart.touched.addAll(cart.items.keySet());
+                }
+                cart.touched.addAll(failed.changes.keySet());
+                markDirty(failed.userId, cart);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        for (Map.Entry<Long, LiveCart> entry : carts.entrySet()) {
+            if (entry.getValue().lastAccess >= cutoff) {
+                continue;
+            }
+            ReentrantLock lock = stripe(entry.getKey());
+            lock.lock();
+            try {
+                LiveCart cart = carts.get(entry.getKey());
+                if (cart != null && cart.lastAccess < cutoff && !dirtyUsers.contains(entry.getKey())) {
+                    carts.remove(entry.getKey());
+                    evictions.incrementAndGet();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Caller holds the user's stripe lock.
+    private LiveCart cart(long userId) {
+        LiveCart cart = carts.get(userId);
+        if (cart == null) {
+            LiveCart loaded = new LiveCart();
+            jdbcTemplate.query(LOAD_SQL, row -> {
+                loaded.items.put(row.getLong(1), row.getInt(2));
+            }, userId);
+            carts.put(userId, loaded);
+            loads.incrementAndGet();
+            cart = loaded;
+        }
+        cart.lastAccess = System.currentTimeMillis();
+        return cart;
+    }
+
+    // Caller holds the user's stripe lock, so records of one cart are logged in the order they were applied.
+    private void logLine(long userId, long productId, Integer quantity) {
+        if (quantity == null) {
+            journal.append(CartJournal.REMOVE, userId, productId, 0);
+        } else {
+            journal.append(CartJournal.SET, userId, productId, quantity);
+        }
+    }
+
+    private void markDirty(long userId, LiveCart cart) {
+        if (dirtyUsers.add(userId)) {
+            cart.dirtySince = System.currentTimeMillis();
+        }
+    }
+
+    private ReentrantLock stripe(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 32) & (stripes.length - 1)];
+    }
+
+    private static final class LiveCart {
+        final Map<Long, Integer> items = new LinkedHashMap<>();
+        final Set<Long> touched = new HashSet<>();
+        boolean cleared;
+        long lastAccess;
+        long dirtySince;
+    }
+
+    private record PendingCart(long userId, boolean cleared, Map<Long, Integer> changes) {
+        /** Applies {@code later} on top of {@code earlier}; either may be null. */
+        static PendingCart merge(PendingCart earlier, PendingCart later) {
+            if (earlier == null || later != null && later.cleared) {
+                return later;
+            }
+            if (later == null) {
+                return earlier;
+            }
+            Map<Long, Integer> changes = new LinkedHashMap<>(earlier.changes);
+            changes.putAll(later.changes);
+            return new PendingCart(earlier.userId, earlier.cleared, changes);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.shopnow.cart;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory-only carts for anonymous shoppers, keyed by an opaque random token.
+ * Expiry is driven by a hashed timer wheel: each cart sits in the slot of the
+ * tick it expires at and is moved when touched, so a sweep only visits the
+ * slot that is due. The number of carts and lines per cart are hard-capped;
+ * creating a cart at the cap evicts the cart closest to expiry. Creation is
+ * open to anonymous callers, so each client also has a token bucket of cart
+ * creations that refills at {@code creates-per-minute}.
+ */
+@Component
+public class GuestCartStore {
+    private static final int MAX_WHEEL_SLOTS = 1 << 16;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, GuestCart> carts = new ConcurrentHashMap<>();
+    private final Set<String>[] wheel;
+    private final long ttlMillis;
+    private final long tickMillis;
+    private final int maxCarts;
+    private final int maxLines;
+    private final double createsPerMilli;
+    private final int createBurst;
+    private final Cache<String, CreateBudget> createBudgets;
+    private long lastTick;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public GuestCartStore(
+            @Value("${shopnow.guest-cart.ttl:2h}") Duration ttl,
+            @Value("${shopnow.guest-cart.tick:PT1S}") Duration tick,
+            @Value("${shopnow.guest-cart.max-carts:100000}") int maxCarts,
+            @Value("${shopnow.guest-cart.max-lines:100}") int maxLines,
+            @Value("${shopnow.guest-cart.creates-per-minute:20}") int createsPerMinute,
+            @Value("${shopnow.guest-cart.create-burst:10}") int createBurst) {
+        this.ttlMillis = ttl.toMillis();
+        this.tickMillis = Math.max(1, tick.toMillis());
+        this.maxCarts = maxCarts;
+        this.maxLines = maxLines;
+        this.createsPerMilli = Math.max(1, createsPerMinute) / 60_000.0;
+        this.createBurst = Math.max(1, createBurst);
+        // An idle bucket is full again after this long, so dropping it loses nothing.
+        this.createBudgets = Caffeine.newBuilder()
+                .maximumSize(maxCarts)
+                .expireAfterAccess(Duration.ofMillis((long) Math.ceil(this.createBurst / createsPerMilli)))
+                .build();
+        long ticksPerTtl = ttlMillis / tickMillis + 1;
+        int slots = (int) Math.min(MAX_WHEEL_SLOTS, Long.highestOneBit(ticksPerTtl) << 1);
+        this.wheel = new Set[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.lastTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /** Takes one cart creation from the client's bucket; false once the client is over its rate. */
+    public boolean tryAcquireCreate(String client) {
+        CreateBudget budget = createBudgets.get(client, key -> new CreateBudget(createBurst));
+        synchronized (budget) {
+            long now = System.currentTimeMillis();
+            budget.tokens = Math.min(createBurst, budget.tokens + (now - budget.refilledAt) * createsPerMilli);
+            budget.refilledAt = now;
+            if (budget.tokens >= 1) {
+                budget.tokens--;
+                return true;
+            }
+        }
+        rateLimited.incrementAndGet();
+        return false;
+    }
+
+    public synchronized String create() {
+        while (carts.size() >= maxCarts && evictSoonestExpiring()) {
+            evicted.incrementAndGet();
+        }
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        GuestCart cart = new GuestCart();
+        synchronized (cart) {
+            carts.put(token, cart);
+            touch(token, cart);
+        }
+        created.incrementAndGet();
+        return token;
+    }
+
+    /** Returns product id to quantity in insertion order. */
+    public Map<Long, Integer> items(String token) {
+        GuestCart cart = cart(token);
+        synchronized (cart) {
+            touch(token, cart);
+            return new LinkedHashMap<>(cart.items);
+        }
+    }
+
+    public Map<Long, Integer> set(String token, long productId, int quantity) {
+        GuestCart cart = cart(token);
+        synchronized (cart) {
+            if (quantity <= 0) {
+                cart.items.remove(productId);
+            } else {
+                checkCapacity(cart, productId);
+                cart.items.put(productId, quantity);
+            }
+            touch(token, cart);
+            return new LinkedHashMap<>(cart.items);
+        }
+    }
+
+    public Map<Long, Integer> add(String token, long productId, int delta) {
+        GuestCart cart = cart(token);
+        synchronized (cart) {
+            int quantity = cart.items.getOrDefault(productId, 0) + delta;
+            if (quantity <= 0) {
+                cart.items.remove(productId);
+            } else {
+                checkCapacity(cart, productId);
+                cart.items.put(productId, quantity);
+            }
+            touch(token, cart);
+            return new LinkedHashMap<>(cart.items);
+        }
+    }
+
+    public Map<Long, Integer> remove(String token, long productId) {
+        GuestCart cart = cart(token);
+        synchronized (cart) {
+            cart.items.remove(productId);
+            touch(token, cart);
+            return new LinkedHashMap<>(cart.items);
+        }
+    }
+
+    public void delete(String token) {
+        GuestCart cart = carts.remove(token);
+        if (cart != null) {
+            synchronized (cart) {
+                wheel[cart.slot].remove(token);
+            }
+        }
+    }
+
+    /** Returns the cart's lines without touching it, or an empty map for an unknown or expired token. */
+    public Map<Long, Integer> peek(String token) {
+        GuestCart cart = token == null ? null : carts.get(token);
+        if (cart == null) {
+            return Collections.emptyMap();
+        }
+        synchronized (cart) {
+            return new LinkedHashMap<>(cart.items);
+        }
+    }
+
+    /** Deletes a cart whose lines have been merged into a user's cart. */
+    public void markMerged(String token) {
+        if (carts.containsKey(token)) {
+            delete(token);
+            merged.incrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shopnow.guest-cart.tick:PT1S}")
+    public synchronized void expire() {
+        long now = System.currentTimeMillis();
+        long currentTick = now / tickMillis;
+        long from = Math.max(lastTick + 1, currentTick - wheel.length + 1);
+        for (long tick = from; tick <= currentTick; tick++) {
+            int slot = (int) (tick & (wheel.length - 1));
+            for (Iterator<String> it = wheel[slot].iterator(); it.hasNext(); ) {
+                String token = it.next();
+                GuestCart cart = carts.get(token);
+                if (cart == null) {
+                    it.remove();
+                    continue;
+                }
+                synchronized (cart) {
+                    if (cart.slot != slot) {
+                        it.remove();
+                    } else if (cart.expiresAt <= now) {
+                        it.remove();
+                        carts.remove(token, cart);
+                        expired.incrementAndGet();
+                    }
+                }
+            }
+        }
+        lastTick = currentTick;
+    }
+
+    public Map<String, Object> stats() {
+        long lines = 0;
+        for (GuestCart cart : carts.values()) {
+            lines += cart.items.size();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("carts", carts.size());
+        result.put("lines", lines);
+        result.put("maxCarts", maxCarts);
+        result.put("maxLinesPerCart", maxLines);
+        result.put("wheelSlots", wheel.length);
+        result.put("created", created.get());
+        result.put("expired", expired.get());
+        result.put("evicted", evicted.get());
+        result.put("merged", merged.get());
+        result.put("rateLimited", rateLimited.get());
+        return result;
+    }
+
+    private GuestCart cart(String token) {
+        GuestCart cart = carts.get(token);
+        if (cart == null || cart.expiresAt <= System.currentTimeMillis()) {
+            throw new RuntimeException("Guest cart not found");
+        }
+        return cart;
+    }
+
+    private void checkCapacity(GuestCart cart, long productId) {
+        if (cart.items.size() >= maxLines && !cart.items.containsKey(productId)) {
+            throw new RuntimeException("Guest cart is full");
+        }
+    }
+
+    // Caller holds the cart's monitor.
+    private void touch(String token, GuestCart cart) {
+        cart.expiresAt = System.currentTimeMillis() + ttlMillis;
+        int slot = (int) ((cart.expiresAt / tickMillis + 1) & (wheel.length - 1));
+        if (slot != cart.slot || !wheel[slot].contains(token)) {
+            wheel[cart.slot].remove(token);
+            wheel[slot].add(token);
+            cart.slot = slot;
+        }
+    }
+
+    // Walks the wheel from the next due tick and drops the first cart found.
+    private boolean evictSoonestExpiring() {
+        long tick = System.currentTimeMillis() / tickMillis;
+        for (int i = 0; i < wheel.length; i++) {
+            int slot = (int) ((tick + i) & (wheel.length - 1));
+            for (String token : wheel[slot]) {
+                GuestCart cart = carts.get(token);
+                if (cart != null && carts.remove(token, cart)) {
+                    synchronized (cart) {
+                        wheel[slot].remove(token);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class CreateBudget {
+        double tokens;
+        long refilledAt = System.currentTimeMillis();
+
+        CreateBudget(int tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    private static final class GuestCart {
+        final Map<Long, Integer> items = new LinkedHashMap<>();
+        long expiresAt;
+        int slot;
+    }
+}
@@ -0,0 +1,474 @@
+package com.shopnow.catalog;
+
+import com.shopnow.model.Product;
+import com.shopnow.repository.ProductRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory faceted index over the product catalog. Every product gets a dense
+ * ordinal in a {@link ColumnarCatalog}; categories and rating buckets are bitmaps
+ * over those ordinals and prices are kept in a column sorted by price so a range
+ * becomes two binary searches. Product objects are only built for the result page.
+ */
+@Component
+public class CatalogIndex {
+    static final int RATING_BUCKETS = 6;
+
+    private final ProductRepository productRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private ColumnarCatalog columns = new ColumnarCatalog();
+    // Null right after a snapshot restore, whose ids are in ascending order; built on the first write.
+    private Map<Long, Integer> ordinals = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final Map<String, BitSet> categories = new HashMap<>();
+    private final BitSet[] ratings = new BitSet[RATING_BUCKETS];
+
+    private double[] sortedPrices = new double[0];
+    private int[] priceOrdinals = new int[0];
+    private boolean priceColumnStale;
+    private long version;
+
+    public CatalogIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+        for (int i = 0; i < RATING_BUCKETS; i++) {
+            ratings[i] = new BitSet();
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(CatalogReloadEvent.class)
+    public void load() {
+        rebuild(productRepository.findAll());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else {
+            put(event.getProduct());
+        }
+    }
+
+    public void rebuild(List<Product> catalog) {
+        lock.writeLock().lock();
+        try {
+            columns.reset();
+            ordinals = new HashMap<>();
+            live.clear();
+            categories.clear();
+            for (BitSet bucket : ratings) {
+                bucket.clear();
+            }
+            for (Product product : catalog) {
+                insert(product);
+            }
+            rebuildPriceColumn();
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            indexIds();
+            Integer ordinal = ordinals.get(product.getId());
+            if (ordinal != null) {
+                unlink(ordinal);
+                columns.set(ordinal, product);
+                link(ordinal);
+            } else {
+                insert(product);
+            }
+            priceColumnStale = true;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            indexIds();
+            Integer ordinal = ordinals.remove(productId);
+            if (ordinal != null) {
+                unlink(ordinal);
+                columns.clear(ordinal);
+                priceColumnStale = true;
+                version++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Serves a catalog restored from a snapshot, taking its indexes as they are instead of rebuilding them. */
+    void restore(Snapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            columns = snapshot.columns();
+            ordinals = null;
+            live.clear();
+            live.set(0, columns.size());
+            categories.clear();
+            categories.putAll(snapshot.categories());
+            for (int bucket = 0; bucket < RATING_BUCKETS; bucket++) {
+                ratings[bucket] = snapshot.ratings()[bucket];
+            }
+            sortedPrices = snapshot.sortedPrices();
+            priceOrdinals = snapshot.priceOrdinals();
+            priceColumnStale = false;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns a copy of the columns and indexes for the snapshot writer. */
+    Snapshot snapshot() {
+        lockWithFreshPriceColumn();
+        try {
+            Map<String, BitSet> categoryCopies = new HashMap<>();
+            categories.forEach((category, bits) -> categoryCopies.put(category, (BitSet) bits.clone()));
+            BitSet[] ratingCopies = new BitSet[RATING_BUCKETS];
+            for (int bucket = 0; bucket < RATING_BUCKETS; bucket++) {
+                ratingCopies[bucket] = (BitSet) ratings[bucket].clone();
+            }
+            // The price arrays are replaced, never written, once built.
+            return new Snapshot(columns.copy(), categoryCopies, ratingCopies, sortedPrices, priceOrdinals);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void forEachProduct(Consumer<Product> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+                consumer.accept(columns.toProduct(ordinal));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Product> find(Long productId) {
+        lock.readLock().lock();
+        try {
+            int ordinal = ordinalOf(productId);
+            return ordinal < 0 ? Optional.empty() : Optional.of(columns.toProduct(ordinal));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Builds the products with the given ids in that order, skipping ids no longer in the catalog. */
+    public List<Product> findAll(long[] productIds) {
+        lock.readLock().lock();
+        try {
+            List<Product> found = new ArrayList<>(productIds.length);
+            for (long productId : productIds) {
+                int ordinal = ordinalOf(productId);
+                if (ordinal >= 0) {
+                    found.add(columns.toProduct(ordinal));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long version() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public CatalogResult search(CatalogQuery query) {
+        lockWithFreshPriceColumn();
+        try {
+            BitSet priceMatch = priceRange(query.getMinPrice(), query.getMaxPrice());
+            BitSet categoryMatch = union(query.getCategories() == null ? null
+                    : query.getCategories().stream().map(categories::get).toList());
+            BitSet ratingMatch = union(query.getRatings() == null ? null
+                    : query.getRatings().stream().map(this::ratingBucket).toList());
+
+            // Each facet is counted against the other active filters, never its own,
+            // so unticking a category always shows how many results it would add.
+            BitSet forCategories = (BitSet) priceMatch.clone();
+            and(forCategories, ratingMatch);
+            Map<String, Integer> categoryCounts = new LinkedHashMap<>();
+            for (Map.Entry<String, BitSet> entry : categories.entrySet()) {
+                int count = intersectionCount(forCategories, entry.getValue());
+                if (count > 0) {
+                    categoryCounts.put(entry.getKey(), count);
+                }
+            }
+
+            BitSet forRatings = (BitSet) priceMatch.clone();
+            and(forRatings, categoryMatch);
+            Map<Integer, Integer> ratingCounts = new LinkedHashMap<>();
+            for (int bucket = RATING_BUCKETS - 1; bucket >= 0; bucket--) {
+                int count = intersectionCount(forRatings, ratings[bucket]);
+                if (count > 0) {
+                    ratingCounts.put(bucket, count);
+                }
+            }
+
+            BitSet matches = forRatings;
+            and(matches, ratingMatch);
+            List<Product> page = new ArrayList<>(Math.min(query.getLimit(), 64));
+            for (int i = matches.nextSetBit(0); i >= 0 && page.size() < query.getLimit(); i = matches.nextSetBit(i + 1)) {
+                page.add(columns.toProduct(i));
+            }
+            return new CatalogResult(page, matches.cardinality(), categoryCounts, ratingCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Takes the read lock, first rebuilding the price column if a write left it stale.
+    private void lockWithFreshPriceColumn() {
+        lock.readLock().lock();
+        if (priceColumnStale) {
+            lock.readLock().unlock();
+            lock.writeLock().lock();
+            try {
+                if (priceColumnStale) {
+                    rebuildPriceColumn();
+                }
+                lock.readLock().lock();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private int ordinalOf(long productId) {
+        if (ordinals != null) {
+            Integer ordinal = ordinals.get(productId);
+            return ordinal == null ? -1 : ordinal;
+        }
+        int low = 0;
+        int high = columns.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long id = columns.id(mid);
+            if (id < productId) {
+                low = mid + 1;
+            } else if (id > productId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Builds the id map a restored catalog answers from its sorted ids; call under the write lock.
+    private void indexIds() {
+        if (ordinals == null) {
+            ordinals = new HashMap<>(columns.size() * 2);
+            for (int ordinal = 0; ordinal < columns.size(); ordinal++) {
+                ordinals.put(columns.id(ordinal), ordinal);
+            }
+        }
+    }
+
+    private void insert(Product product) {
+        int ordinal = columns.append(product);
+        ordinals.put(product.getId(), ordinal);
+        link(ordinal);
+    }
+
+    private void link(int ordinal) {
+        live.set(ordinal);
+        String category = columns.category(ordinal);
+        if (category != null) {
+            categories.computeIfAbsent(category, c -> new BitSet()).set(ordinal);
+        }
+        ratings[bucketOf(columns.rating(ordinal))].set(ordinal);
+    }
+
+    private void unlink(int ordinal) {
+        live.clear(ordinal);
+        String category = columns.category(ordinal);
+        if (category != null) {
+            BitSet bits = categories.get(category);
+            bits.clear(ordinal);
+            if (bits.isEmpty()) {
+                categories.remove(category);
+            }
+        }
+        ratings[bucketOf(columns.rating(ordinal))].clear(ordinal);
+    }
+
+    private void rebuildPriceColumn() {
+        int[] order = live.stream().toArray();
+        double[] prices = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            prices[i] = columns.price(order[i]);
+        }
+        sortByPrice(prices, order, 0, order.length - 1);
+        sortedPrices = prices;
+        priceOrdinals = order;
+        priceColumnStale = false;
+    }
+
+    private static void sortByPrice(double[] prices, int[] order, int low, int high) {
+        while (low < high) {
+            if (high - low < 16) {
+                for (int i = low + 1; i <= high; i++) {
+                    double price = prices[i];
+                    int ordinal = order[i];
+                    int j = i - 1;
+                    while (j >= low && prices[j] > price) {
+                        prices[j + 1] = prices[j];
+                        order[j + 1] = order[j];
+                        j--;
+                    }
+                    prices[j + 1] = price;
+                    order[j + 1] = ordinal;
+                }
+                return;
+            }
+            double pivot = prices[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (prices[i] < pivot) {
+                    i++;
+                }
+                while (prices[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double price = prices[i];
+                    prices[i] = prices[j];
+                    prices[j] = price;
+                    int ordinal = order[i];
+                    order[i] = order[j];
+                    order[j] = ordinal;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half and loop on the larger to bound stack depth.
+            if (j - low < high - i) {
+                sortByPrice(prices, order, low, j);
+                low = i;
+            } else {
+                sortByPrice(prices, order, i, high);
+                high = j;
+            }
+        }
+    }
+
+    private BitSet priceRange(Double min, Double max) {
+        if (min == null && max == null) {
+            return (BitSet) live.clone();
+        }
+        int from = min == null ? 0 : lowerBound(min);
+        int to = max == null ? sortedPrices.length : upperBound(max);
+        BitSet bits = new BitSet(columns.size());
+        for (int i = from; i < to; i++) {
+            bits.set(priceOrdinals[i]);
+        }
+        return bits;
+    }
+
+    private int lowerBound(double value) {
+        int index = Arrays.binarySearch(sortedPrices, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && sortedPrices[index - 1] == value) {
+            index--;
+        }
+        return index;
+    }
+
+    private int upperBound(double value) {
+        int index = Arrays.binarySearch(sortedPrices, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index < sortedPrices.length && sortedPrices[index] == value) {
+            index++;
+        }
+        return index;
+    }
+
+    private BitSet ratingBucket(Integer rating) {
+        return rating == null || rating < 0 || rating >= RATING_BUCKETS ? null : ratings[rating];
+    }
+
+    static int bucketOf(double rating) {
+        if (Double.isNaN(rating) || rating < 0) {
+            return 0;
+        }
+        return Math.min(RATING_BUCKETS - 1, (int) Math.floor(rating));
+    }
+
+    private static BitSet union(List<BitSet> sets) {
+        if (sets == null || sets.isEmpty()) {
+            return null;
+        }
+        BitSet result = new BitSet();
+        for (BitSet set : sets) {
+            if (set != null) {
+                result.or(set);
+            }
+        }
+        return result;
+    }
+
+    private static void and(BitSet target, BitSet filter) {
+        if (filter != null) {
+            target.and(filter);
+        }
+    }
+
+    private static int intersectionCount(BitSet a, BitSet b) {
+        BitSet copy = (BitSet) b.clone();
+        copy.and(a);
+        return copy.cardinality();
+    }
+
+    /** The columns and the indexes over them, as persisted in a catalog snapshot. */
+    record Snapshot(ColumnarCatalog columns, Map<String, BitSet> categories, BitSet[] ratings,
+                    double[] sortedPrices, int[] priceOrdinals) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.shopnow.catalog;
+
+import lombok.Data;
+
+import java.util.Set;
+
+@Data
+public class CatalogQuery {
+    private Set<String> categories;
+    private Double minPrice;
+    private Double maxPrice;
+    private Set<Integer> ratings;
+    private int limit = 50;
+}
@@ -0,0 +1,4 @@
+package com.shopnow.catalog;
+
+public class CatalogReloadEvent {
+}
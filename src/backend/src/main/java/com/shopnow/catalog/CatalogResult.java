@@ -0,0 +1,17 @@
+package com.shopnow.catalog;
+
+import com.shopnow.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class CatalogResult {
+    private final List<Product> products;
+    private final int total;
+    private final Map<String, Integer> categoryCounts;
+    private final Map<Integer, Integer> ratingCounts;
+}
@@ -0,0 +1,436 @@
+package com.shopnow.catalog;
+
+import com.shopnow.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persists the columnar catalog and its indexes to a binary snapshot and maps
+ * it back in at startup. The restored catalog reads its columns from the
+ * mapping and takes the price order, facet bitmaps and full-text postings as
+ * written, so startup neither scans the product table nor rebuilds an index.
+ *
+ * <p>Layout: a fixed {@value #HEADER_SIZE}-byte header (magic, format version,
+ * creation time, product count, latest {@code updated_at}, CRC32 of the body,
+ * offsets of the product records and of the search section) followed by the id,
+ * price, rating, update-time, sorted-price, category-code, price-order and
+ * record-index columns, the category dictionary, one bitmap per category and
+ * per rating bucket, the product records (name, image, stored description) and
+ * the search section (document lengths, then each term with its postings).
+ * Products are stored in id order. The search section is left out, and the
+ * search index rebuilt at startup, if the index did not match the catalog
+ * when the snapshot was taken.
+ * A snapshot is used only while the product count and latest {@code updated_at}
+ * still match the table, so every write to products must set {@code updated_at}.
+ */
+@Component
+public class CatalogSnapshotService {
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    static final int MAGIC = 0x534E4353;
+    static final int FORMAT_VERSION = 3;
+    static final int HEADER_SIZE = 64;
+
+    private final CatalogIndex catalogIndex;
+    private final SearchIndex searchIndex;
+    private final ProductRepository productRepository;
+    private final Path path;
+    private final boolean enabled;
+    private long writtenVersion = -1;
+
+    public CatalogSnapshotService(
+            CatalogIndex catalogIndex,
+            SearchIndex searchIndex,
+            ProductRepository productRepository,
+            @Value("${shopnow.snapshot.path:data/catalog.snapshot}") String path,
+            @Value("${shopnow.snapshot.enabled:true}") boolean enabled) {
+        this.catalogIndex = catalogIndex;
+        this.searchIndex = searchIndex;
+        this.productRepository = productRepository;
+        this.path = Path.of(path);
+        this.enabled = enabled;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            try {
+                Restored restored = read();
+                if (restored != null) {
+                    catalogIndex.restore(restored.catalog());
+                    writtenVersion = catalogIndex.version();
+                    if (restored.search() != null) {
+                        searchIndex.restore(restored.search());
+                    } else {
+                        searchIndex.load();
+                    }
+                    log.info("Catalog restored from snapshot {} ({} products, search index {})", path,
+                            catalogIndex.size(), restored.search() != null ? "restored" : "rebuilt");
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable catalog snapshot {}", path, e);
+            }
+        }
+        catalogIndex.load();
+        searchIndex.load();
+    }
+
+    @Scheduled(fixedDelayString = "${shopnow.snapshot.interval:PT5M}",
+               initialDelayString = "${shopnow.snapshot.interval:PT5M}")
+    public synchronized void writeIfChanged() {
+        if (!enabled || catalogIndex.version() == writtenVersion) {
+            return;
+        }
+        try {
+            long version = catalogIndex.version();
+            write(catalogIndex.snapshot(), searchIndex.snapshot());
+            writtenVersion = version;
+        } catch (IOException e) {
+            log.error("Could not write catalog snapshot {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void onShutdown() {
+        writeIfChanged();
+    }
+
+    Restored read() throws IOException {
+        if (!Files.isReadable(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                log.warn("Catalog snapshot {} is truncated", path);
+                return null;
+            }
+            // The mapping outlives the channel and backs the restored columns.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int magic = buffer.getInt();
+            int formatVersion = buffer.getInt();
+            long createdAt = buffer.getLong();
+            int count = buffer.getInt();
+            long lastUpdate = buffer.getLong();
+            long checksum = buffer.getLong();
+            int recordsOffset = buffer.getInt();
+            int searchOffset = buffer.getInt();
+            if (magic != MAGIC || formatVersion != FORMAT_VERSION) {
+                log.warn("Catalog snapshot {} has unsupported format {}", path, formatVersion);
+                return null;
+            }
+
+            if (count != productRepository.count() || lastUpdate != toMillis(productRepository.findLastUpdate())) {
+                log.info("Catalog snapshot {} from {} is stale", path, createdAt);
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+            if (crc.getValue() != checksum) {
+                log.warn("Catalog snapshot {} failed its checksum", path);
+                return null;
+            }
+
+            int idsOffset = HEADER_SIZE;
+            int pricesOffset = idsOffset + count * Long.BYTES;
+            int ratingsOffset = pricesOffset + count * Double.BYTES;
+            int updatedOffset = ratingsOffset + count * Double.BYTES;
+            int sortedPricesOffset = updatedOffset + count * Long.BYTES;
+            int categoriesOffset = sortedPricesOffset + count * Double.BYTES;
+            int priceOrdinalsOffset = categoriesOffset + count * Integer.BYTES;
+            int recordIndexOffset = priceOrdinalsOffset + count * Integer.BYTES;
+
+            double[] sortedPrices = new double[count];
+            buffer.slice(sortedPricesOffset, count * Double.BYTES).asDoubleBuffer().get(sortedPrices);
+            int[] priceOrdinals = new int[count];
+            buffer.slice(priceOrdinalsOffset, count * Integer.BYTES).asIntBuffer().get(priceOrdinals);
+
+            buffer.position(recordIndexOffset + count * Integer.BYTES);
+            int dictionarySize = buffer.getInt();
+            List<String> dictionary = new ArrayList<>(dictionarySize);
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary.add(readString(buffer));
+            }
+            Map<String, BitSet> categories = new HashMap<>();
+            for (String category : dictionary) {
+                BitSet bits = readBits(buffer);
+                if (!bits.isEmpty()) {
+                    categories.put(category, bits);
+                }
+            }
+            BitSet[] ratings = new BitSet[CatalogIndex.RATING_BUCKETS];
+            for (int bucket = 0; bucket < ratings.length; bucket++) {
+                ratings[bucket] = readBits(buffer);
+            }
+
+            ColumnarCatalog columns = ColumnarCatalog.mapped(buffer, count, idsOffset, pricesOffset, ratingsOffset,
+                    updatedOffset, categoriesOffset, recordIndexOffset, recordsOffset, dictionary);
+            CatalogIndex.Snapshot catalog = new CatalogIndex.Snapshot(columns, categories, ratings, sortedPrices,
+                    priceOrdinals);
+            SearchIndex.Snapshot search = null;
+            if (searchOffset != 0) {
+                long[] ids = new long[count];
+                buffer.slice(idsOffset, count * Long.BYTES).asLongBuffer().get(ids);
+                long[] updated = new long[count];
+                buffer.slice(updatedOffset, count * Long.BYTES).asLongBuffer().get(updated);
+                search = readSearch(buffer.position(searchOffset), ids, updated);
+            }
+            return new Restored(catalog, search);
+        }
+    }
+
+    void write(CatalogIndex.Snapshot snapshot, SearchIndex.Snapshot search) throws IOException {
+        ColumnarCatalog columns = snapshot.columns();
+        // Live products are renumbered in id order, so a restored index can find ids by binary search.
+        List<Integer> live = new ArrayList<>(columns.size());
+        for (int ordinal = 0; ordinal < columns.size(); ordinal++) {
+            if (columns.isLive(ordinal)) {
+                live.add(ordinal);
+            }
+        }
+        live.sort((a, b) -> Long.compare(columns.id(a), columns.id(b)));
+        int count = live.size();
+        int[] renumbered = new int[columns.size()];
+        long lastUpdate = 0;
+        for (int i = 0; i < count; i++) {
+            renumbered[live.get(i)] = i;
+            lastUpdate = Math.max(lastUpdate, columns.updatedAt(live.get(i)));
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "catalog", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            for (int ordinal : live) {
+                out.writeLong(columns.id(ordinal));
+            }
+            for (int ordinal : live) {
+                out.writeDouble(columns.price(ordinal));
+            }
+            for (int ordinal : live) {
+                out.writeDouble(columns.rating(ordinal));
+            }
+            for (int ordinal : live) {
+                out.writeLong(columns.updatedAt(ordinal));
+            }
+            for (double price : snapshot.sortedPrices()) {
+                out.writeDouble(price);
+            }
+            for (int ordinal : live) {
+                out.writeInt(columns.categoryCode(ordinal));
+            }
+            for (int ordinal : snapshot.priceOrdinals()) {
+                out.writeInt(renumbered[ordinal]);
+            }
+
+            List<byte[][]> records = new ArrayList<>(count);
+            int position = 0;
+            for (int ordinal : live) {
+                byte[][] record = {utf8(columns.name(ordinal)), utf8(columns.image(ordinal)),
+                        columns.storedDescription(ordinal)};
+                records.add(record);
+                out.writeInt(position);
+                for (byte[] field : record) {
+                    position += Integer.BYTES + (field == null ? 0 : field.length);
+                }
+            }
+
+            List<String> dictionary = columns.categoryDictionary();
+            out.writeInt(dictionary.size());
+            for (String category : dictionary) {
+                writeString(out, category);
+            }
+            for (String category : dictionary) {
+                writeBits(out, renumber(snapshot.categories().get(category), renumbered));
+            }
+            for (BitSet bucket : snapshot.ratings()) {
+                writeBits(out, renumber(bucket, renumbered));
+            }
+
+            int recordsOffset = HEADER_SIZE + out.size();
+            for (byte[][] record : records) {
+                for (byte[] field : record) {
+                    writeBytes(out, field);
+                }
+            }
+
+            int searchOffset = 0;
+            if (matches(search, columns, live)) {
+                searchOffset = HEADER_SIZE + out.size();
+                writeSearch(out, search);
+            } else {
+                log.info("Search index changed while the catalog snapshot was taken; leaving it out");
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(System.currentTimeMillis())
+                    .putInt(count)
+                    .putLong(lastUpdate)
+                    .putLong(crc.getValue())
+                    .putInt(recordsOffset)
+                    .putInt(searchOffset);
+            header.position(0);
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Wrote catalog snapshot {} ({} products)", path, count);
+    }
+
+    // The search index describes the snapshot's products if it holds the same ids at the same update times.
+    private static boolean matches(SearchIndex.Snapshot search, ColumnarCatalog columns, List<Integer> live) {
+        if (search.productIds().length != live.size()) {
+            return false;
+        }
+        for (int i = 0; i < live.size(); i++) {
+            if (search.productIds()[i] != columns.id(live.get(i))
+                    || search.updatedAt()[i] != columns.updatedAt(live.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeSearch(DataOutputStream out, SearchIndex.Snapshot search) throws IOException {
+        for (int length : search.lengths()) {
+            out.writeInt(length);
+        }
+        out.writeInt(search.terms().length);
+        for (int t = 0; t < search.terms().length; t++) {
+            writeString(out, search.terms()[t]);
+            out.writeInt(search.documents()[t].length);
+            for (int document : search.documents()[t]) {
+                out.writeInt(document);
+            }
+            for (int frequency : search.frequencies()[t]) {
+                out.writeInt(frequency);
+            }
+        }
+    }
+
+    private static SearchIndex.Snapshot readSearch(ByteBuffer buffer, long[] ids, long[] updated) {
+        int[] lengths = readInts(buffer, ids.length);
+        int termCount = buffer.getInt();
+        String[] terms = new String[termCount];
+        int[][] documents = new int[termCount][];
+        int[][] frequencies = new int[termCount][];
+        for (int t = 0; t < termCount; t++) {
+            terms[t] = readString(buffer);
+            int postings = buffer.getInt();
+            documents[t] = readInts(buffer, postings);
+            frequencies[t] = readInts(buffer, postings);
+        }
+        return new SearchIndex.Snapshot(ids, updated, lengths, terms, documents, frequencies);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.slice(buffer.position(), count * Integer.BYTES).asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? 0 : Timestamp.valueOf(time).getTime();
+    }
+
+    private static BitSet renumber(BitSet bits, int[] renumbered) {
+        BitSet result = new BitSet();
+        if (bits != null) {
+            for (int ordinal = bits.nextSetBit(0); ordinal >= 0; ordinal = bits.nextSetBit(ordinal + 1)) {
+                result.set(renumbered[ordinal]);
+            }
+        }
+        return result;
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readBits(ByteBuffer buffer) {
+        int words = buffer.getInt();
+        BitSet bits = BitSet.valueOf(buffer.slice(buffer.position(), words * Long.BYTES).asLongBuffer());
+        buffer.position(buffer.position() + words * Long.BYTES);
+        return bits;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, utf8(value));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = readBytes(buffer);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /** A catalog read back from a snapshot; {@code search} is null when the snapshot has no search section. */
+    record Restored(CatalogIndex.Snapshot catalog, SearchIndex.Snapshot search) {
+    }
+}
@@ -0,0 +1,366 @@
+package com.shopnow.catalog;
+
+import com.shopnow.model.Product;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Column-oriented product storage addressed by dense ordinals. Price and rating
+ * are primitive columns, categories are dictionary codes and descriptions are
+ * kept as deflated UTF-8 when that is smaller than the raw bytes.
+ *
+ * <p>A catalog restored from a snapshot reads its columns straight from the
+ * mapped file; the first write copies them onto the heap. Reads never move the
+ * buffer's position, so concurrent readers are safe. Otherwise not thread-safe;
+ * the owning index guards access.
+ */
+public class ColumnarCatalog {
+    public static final int NO_CATEGORY = -1;
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] deflateBuffer = new byte[4096];
+    private final List<String> categoryDictionary = new ArrayList<>();
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+
+    private int size;
+    private long[] ids = new long[16];
+    private double[] prices = new double[16];
+    private double[] ratings = new double[16];
+    private long[] updated = new long[16];
+    private int[] categories = new int[16];
+    private String[] names = new String[16];
+    private String[] images = new String[16];
+    private byte[][] descriptions = new byte[16][];
+
+    // Snapshot the columns are served from until the first write, with each column's offset in it.
+    private ByteBuffer mapped;
+    private int idsOffset;
+    private int pricesOffset;
+    private int ratingsOffset;
+    private int updatedOffset;
+    private int categoriesOffset;
+    private int recordIndexOffset;
+    private int recordsOffset;
+
+    public int size() {
+        return size;
+    }
+
+    public int append(Product product) {
+        materialize();
+        if (size == ids.length) {
+            grow(Math.max(16, size * 2));
+        }
+        int ordinal = size++;
+        set(ordinal, product);
+        return ordinal;
+    }
+
+    public void set(int ordinal, Product product) {
+        materialize();
+        ids[ordinal] = product.getId();
+        prices[ordinal] = product.getPrice();
+        ratings[ordinal] = product.getRating() == null ? Double.NaN : product.getRating();
+        updated[ordinal] = product.getUpdatedAt() == null ? 0 : Timestamp.valueOf(product.getUpdatedAt()).getTime();
+        categories[ordinal] = encodeCategory(product.getCategory());
+        names[ordinal] = product.getName();
+        images[ordinal] = product.getImage();
+        descriptions[ordinal] = compress(product.getDescription());
+    }
+
+    public void clear(int ordinal) {
+        materialize();
+        names[ordinal] = null;
+        images[ordinal] = null;
+        descriptions[ordinal] = null;
+        categories[ordinal] = NO_CATEGORY;
+    }
+
+    public void reset() {
+        if (mapped != null) {
+            mapped = null;
+            allocate(16);
+        }
+        size = 0;
+        categoryDictionary.clear();
+        categoryCodes.clear();
+        Arrays.fill(names, null);
+        Arrays.fill(images, null);
+        Arrays.fill(descriptions, null);
+    }
+
+    public boolean isLive(int ordinal) {
+        // A snapshot only holds live products.
+        return mapped != null ? ordinal < size : names[ordinal] != null;
+    }
+
+    public long id(int ordinal) {
+        return mapped != null ? mapped.getLong(idsOffset + ordinal * Long.BYTES) : ids[ordinal];
+    }
+
+    public double price(int ordinal) {
+        return mapped != null ? mapped.getDouble(pricesOffset + ordinal * Double.BYTES) : prices[ordinal];
+    }
+
+    /** Returns the rating, or {@link Double#NaN} when the product has none. */
+    public double rating(int ordinal) {
+        return mapped != null ? mapped.getDouble(ratingsOffset + ordinal * Double.BYTES) : ratings[ordinal];
+    }
+
+    /** Returns the product's last update in epoch milliseconds, or 0 when it is unknown. */
+    public long updatedAt(int ordinal) {
+        return mapped != null ? mapped.getLong(updatedOffset + ordinal * Long.BYTES) : updated[ordinal];
+    }
+
+    public int categoryCode(int ordinal) {
+        return mapped != null ? mapped.getInt(categoriesOffset + ordinal * Integer.BYTES) : categories[ordinal];
+    }
+
+    public String category(int ordinal) {
+        int code = categoryCode(ordinal);
+        return code == NO_CATEGORY ? null : categoryDictionary.get(code);
+    }
+
+    public String name(int ordinal) {
+        return mapped != null ? toString(mappedBytes(ordinal, 0)) : names[ordinal];
+    }
+
+    public String image(int ordinal) {
+        return mapped != null ? toString(mappedBytes(ordinal, 1)) : images[ordinal];
+    }
+
+    public String description(int ordinal) {
+        return decompress(storedDescription(ordinal), ordinal);
+    }
+
+    private String decompress(byte[] stored, int ordinal) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored[0] == RAW) {
+            return new String(stored, 1, stored.length - 1, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(stored, 5, stored.length - 5);
+        byte[] raw = new byte[((stored[1] & 0xff) << 24) | ((stored[2] & 0xff) << 16)
+                | ((stored[3] & 0xff) << 8) | (stored[4] & 0xff)];
+        try {
+            inflater.inflate(raw);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt description for product " + id(ordinal), e);
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    public Product toProduct(int ordinal) {
+        Product product = new Product();
+        product.setId(id(ordinal));
+        product.setName(name(ordinal));
+        product.setPrice(price(ordinal));
+        product.setImage(image(ordinal));
+        product.setCategory(category(ordinal));
+        double rating = rating(ordinal);
+        product.setRating(Double.isNaN(rating) ? null : rating);
+        product.setDescription(description(ordinal));
+        long updatedMillis = updatedAt(ordinal);
+        product.setUpdatedAt(updatedMillis == 0 ? null : new Timestamp(updatedMillis).toLocalDateTime());
+        return product;
+    }
+
+    ColumnarCatalog copy() {
+        ColumnarCatalog copy = new ColumnarCatalog();
+        copy.size = size;
+        copy.categoryDictionary.addAll(categoryDictionary);
+        copy.categoryCodes.putAll(categoryCodes);
+        if (mapped != null) {
+            // The mapped snapshot is never written, so the copy can share it.
+            copy.mapped = mapped;
+            copy.idsOffset = idsOffset;
+            copy.pricesOffset = pricesOffset;
+            copy.ratingsOffset = ratingsOffset;
+            copy.updatedOffset = updatedOffset;
+            copy.categoriesOffset = categoriesOffset;
+            copy.recordIndexOffset = recordIndexOffset;
+            copy.recordsOffset = recordsOffset;
+            return copy;
+        }
+        copy.ids = Arrays.copyOf(ids, size);
+        copy.prices = Arrays.copyOf(prices, size);
+        copy.ratings = Arrays.copyOf(ratings, size);
+        copy.updated = Arrays.copyOf(updated, size);
+        copy.categories = Arrays.copyOf(categories, size);
+        copy.names = Arrays.copyOf(names, size);
+        copy.images = Arrays.copyOf(images, size);
+        copy.descriptions = Arrays.copyOf(descriptions, size);
+        return copy;
+    }
+
+    List<String> categoryDictionary() {
+        return categoryDictionary;
+    }
+
+    byte[] storedDescription(int ordinal) {
+        return mapped != null ? mappedBytes(ordinal, 2) : descriptions[ordinal];
+    }
+
+    /**
+     * Serves the catalog from a mapped snapshot. {@code buffer} holds {@code size}
+     * entries in each fixed-width column at the given offsets. Each product's name,
+     * image and stored description are length-prefixed byte strings in one record;
+     * the int column at {@code recordIndexOffset} holds each record's position
+     * relative to {@code recordsOffset}.
+     */
+    static ColumnarCatalog mapped(ByteBuffer buffer, int size, int idsOffset, int pricesOffset, int ratingsOffset,
+                                  int updatedOffset, int categoriesOffset, int recordIndexOffset, int recordsOffset,
+                                  List<String> dictionary) {
+        ColumnarCatalog restored = new ColumnarCatalog();
+        restored.size = size;
+        restored.mapped = buffer;
+        restored.idsOffset = idsOffset;
+        restored.pricesOffset = pricesOffset;
+        restored.ratingsOffset = ratingsOffset;
+        restored.updatedOffset = updatedOffset;
+        restored.categoriesOffset = categoriesOffset;
+        restored.recordIndexOffset = recordIndexOffset;
+        restored.recordsOffset = recordsOffset;
+        for (int code = 0; code < dictionary.size(); code++) {
+            restored.categoryDictionary.add(dictionary.get(code));
+            restored.categoryCodes.put(dictionary.get(code), code);
+        }
+        return restored;
+    }
+
+    // Returns the field-th length-prefixed byte string of the product's record in the mapped snapshot.
+    private byte[] mappedBytes(int ordinal, int field) {
+        int position = recordsOffset + mapped.getInt(recordIndexOffset + ordinal * Integer.BYTES);
+        for (int i = 0; i < field; i++) {
+            position += Integer.BYTES + Math.max(0, mapped.getInt(position));
+        }
+        int length = mapped.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        mapped.get(position + Integer.BYTES, bytes);
+        return bytes;
+    }
+
+    private static String toString(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Copies the mapped columns onto the heap so they can be written.
+    private void materialize() {
+        if (mapped == null) {
+            return;
+        }
+        long[] mappedIds = new long[Math.max(16, size)];
+        double[] mappedPrices = new double[mappedIds.length];
+        double[] mappedRatings = new double[mappedIds.length];
+        long[] mappedUpdated = new long[mappedIds.length];
+        int[] mappedCategories = new int[mappedIds.length];
+        String[] mappedNames = new String[mappedIds.length];
+        String[] mappedImages = new String[mappedIds.length];
+        byte[][] mappedDescriptions = new byte[mappedIds.length][];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            mappedIds[ordinal] = id(ordinal);
+            mappedPrices[ordinal] = price(ordinal);
+            mappedRatings[ordinal] = rating(ordinal);
+            mappedUpdated[ordinal] = updatedAt(ordinal);
+            mappedCategories[ordinal] = categoryCode(ordinal);
+            mappedNames[ordinal] = name(ordinal);
+            mappedImages[ordinal] = image(ordinal);
+            mappedDescriptions[ordinal] = storedDescription(ordinal);
+        }
+        ids = mappedIds;
+        prices = mappedPrices;
+        ratings = mappedRatings;
+        updated = mappedUpdated;
+        categories = mappedCategories;
+        names = mappedNames;
+        images = mappedImages;
+        descriptions = mappedDescriptions;
+        mapped = null;
+    }
+
+    private int encodeCategory(String category) {
+        if (category == null) {
+            return NO_CATEGORY;
+        }
+        Integer code = categoryCodes.get(category);
+        if (code == null) {
+            code = categoryDictionary.size();
+            categoryDictionary.add(category);
+            categoryCodes.put(category, code);
+        }
+        return code;
+    }
+
+    private byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 8);
+        out.write(DEFLATED);
+        out.write(raw.length >>> 24);
+        out.write(raw.length >>> 16);
+        out.write(raw.length >>> 8);
+        out.write(raw.length);
+        while (!deflater.finished()) {
+            int n = deflater.deflate(deflateBuffer);
+            out.write(deflateBuffer, 0, n);
+            if (out.size() > raw.length) {
+                break;
+            }
+        }
+        if (deflater.finished() && out.size() <= raw.length) {
+            return out.toByteArray();
+        }
+        byte[] stored = new byte[raw.length + 1];
+        stored[0] = RAW;
+        System.arraycopy(raw, 0, stored, 1, raw.length);
+        return stored;
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        prices = new double[capacity];
+        ratings = new double[capacity];
+        updated = new long[capacity];
+        categories = new int[capacity];
+        names = new String[capacity];
+        images = new String[capacity];
+        descriptions = new byte[capacity][];
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        ratings = Arrays.copyOf(ratings, capacity);
+        updated = Arrays.copyOf(updated, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        names = Arrays.copyOf(names, capacity);
+        images = Arrays.copyOf(images, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+}
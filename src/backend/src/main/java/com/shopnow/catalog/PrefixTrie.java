@@ -0,0 +1,175 @@
+package com.shopnow.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Term dictionary for type-ahead. Each terminal node carries the number of
+ * products containing the term so completions come back most popular first.
+ * Every node also keeps the {@value #TOP_K} heaviest terms below it, so usual
+ * completions are read off the prefix node without walking its subtree.
+ */
+class PrefixTrie {
+    static final int TOP_K = 10;
+    private static final Comparator<Node> HEAVIEST_FIRST = Comparator.comparingInt((Node node) -> -node.weight)
+            .thenComparing(node -> node.term);
+
+    private final Node root = new Node();
+
+    void add(String term) {
+        add(term, 1);
+    }
+
+    /** Adds {@code weight} occurrences of a term at once. */
+    void add(String term, int weight) {
+        Node node = root;
+        List<Node> path = new ArrayList<>(term.length() + 1);
+        path.add(node);
+        for (int i = 0; i < term.length(); i++) {
+            node = node.children.computeIfAbsent(term.charAt(i), c -> new Node());
+            path.add(node);
+        }
+        node.term = term;
+        node.weight += weight;
+        // A heavier term can only enter or climb the lists on its own path; once
+        // it misses one, it misses every list above it too.
+        for (int i = path.size() - 1; i >= 0; i--) {
+            if (!path.get(i).promote(node)) {
+                break;
+            }
+        }
+    }
+
+    void remove(String term) {
+        Node node = root;
+        List<Node> path = new ArrayList<>(term.length() + 1);
+        path.add(node);
+        for (int i = 0; i < term.length(); i++) {
+            node = node.children.get(term.charAt(i));
+            if (node == null) {
+                return;
+            }
+            path.add(node);
+        }
+        if (node.weight == 0) {
+            return;
+        }
+        if (--node.weight == 0) {
+            node.term = null;
+            for (int i = term.length(); i > 0; i--) {
+                Node current = path.get(i);
+                if (current.term != null || !current.children.isEmpty()) {
+                    break;
+                }
+                path.get(i - 1).children.remove(term.charAt(i - 1));
+            }
+        }
+        // A lighter term may give way to one that was just outside a list, so
+        // every list still holding it is rebuilt from the lists below.
+        for (int i = path.size() - 1; i >= 0 && path.get(i).holds(node); i--) {
+            path.get(i).rebuildTop();
+        }
+    }
+
+    List<String> complete(String prefix, int limit) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (limit <= TOP_K) {
+            List<String> result = new ArrayList<>(Math.min(limit, node.topSize));
+            for (int i = 0; i < node.topSize && i < limit; i++) {
+                result.add(node.top[i].term);
+            }
+            return result;
+        }
+
+        PriorityQueue<Node> best = new PriorityQueue<>(limit + 1, (a, b) -> Integer.compare(a.weight, b.weight));
+        List<Node> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.remove(stack.size() - 1);
+            if (current.term != null) {
+                best.offer(current);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            stack.addAll(current.children.values());
+        }
+
+        List<String> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().term);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private String term;
+        private int weight;
+        private final Node[] top = new Node[TOP_K];
+        private int topSize;
+
+        boolean holds(Node terminal) {
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == terminal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Moves a terminal whose weight grew into place; false when it does not make the list. */
+        boolean promote(Node terminal) {
+            int at = 0;
+            while (at < topSize && top[at] != terminal) {
+                at++;
+            }
+            if (at == topSize) {
+                if (topSize < TOP_K) {
+                    topSize++;
+                } else if (HEAVIEST_FIRST.compare(terminal, top[TOP_K - 1]) < 0) {
+                    at = TOP_K - 1;
+                } else {
+                    return false;
+                }
+                top[at] = terminal;
+            }
+            for (; at > 0 && HEAVIEST_FIRST.compare(top[at], top[at - 1]) < 0; at--) {
+                Node swap = top[at];
+                top[at] = top[at - 1];
+                top[at - 1] = swap;
+            }
+            return true;
+        }
+
+        /** Recomputes the list from this node's own term and its children's lists. */
+        void rebuildTop() {
+            List<Node> candidates = new ArrayList<>();
+            if (term != null) {
+                candidates.add(this);
+            }
+            for (Node child : children.values()) {
+                candidates.addAll(Arrays.asList(child.top).subList(0, child.topSize));
+            }
+            candidates.sort(HEAVIEST_FIRST);
+            Arrays.fill(top, null);
+            topSize = Math.min(TOP_K, candidates.size());
+            for (int i = 0; i < topSize; i++) {
+                top[i] = candidates.get(i);
+            }
+        }
+    }
+}
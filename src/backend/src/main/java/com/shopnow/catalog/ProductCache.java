@@ -0,0 +1,94 @@
+package com.shopnow.catalog;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.shopnow.model.Product;
+import com.shopnow.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Bounded read-through cache of product entities keyed by id. Caffeine's
+ * W-TinyLFU policy keeps hot products resident under a size limit.
+ */
+@Component
+public class ProductCache {
+    private final LoadingCache<Long, Product> cache;
+
+    public ProductCache(
+            ProductRepository productRepository,
+            @Value("${shopnow.product-cache.max-size:10000}") long maxSize,
+            @Value("${shopnow.product-cache.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public Product load(Long id) {
+                        return productRepository.findById(id).orElse(null);
+                    }
+
+                    @Override
+                    public Map<Long, Product> loadAll(Set<? extends Long> ids) {
+                        Map<Long, Product> products = new HashMap<>();
+                        for (Product product : productRepository.findAllById(List.copyOf(ids))) {
+                            products.put(product.getId(), product);
+                        }
+                        return products;
+                    }
+                });
+    }
+
+    public Optional<Product> get(Long productId) {
+        return Optional.ofNullable(cache.get(productId));
+    }
+
+    /** Returns the cached products for the ids, loading every miss with one query; unknown ids are absent. */
+    public Map<Long, Product> getAll(Collection<Long> productIds) {
+        return cache.getAll(productIds);
+    }
+
+    public void invalidate(Long productId) {
+        cache.invalidate(productId);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(CatalogReloadEvent.class)
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        cache.invalidate(event.getProductId());
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("loadFailures", stats.loadFailureCount());
+        return result;
+    }
+}
@@ -0,0 +1,16 @@
+package com.shopnow.catalog;
+
+import com.shopnow.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    private final Long productId;
+    private final Product product;
+
+    public boolean isDeleted() {
+        return product == null;
+    }
+}
@@ -0,0 +1,177 @@
+package com.shopnow.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopnow.dto.ProductImportRow;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams product rows out of a CSV or NDJSON feed one record at a time so
+ * feeds of any size are read in constant memory.
+ */
+public abstract class ProductFeedReader implements Closeable {
+    protected final BufferedReader reader;
+
+    protected ProductFeedReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    public static ProductFeedReader open(BufferedReader reader, String format, ObjectMapper objectMapper)
+            throws IOException {
+        return switch (format.toLowerCase(Locale.ROOT)) {
+            case "csv" -> new CsvReader(reader);
+            case "ndjson", "jsonl" -> new NdjsonReader(reader, objectMapper);
+            default -> throw new IllegalArgumentException("Unsupported feed format: " + format);
+        };
+    }
+
+    /**
+     * Returns the next row, or {@code null} at the end of the feed. Rows that
+     * cannot be parsed are thrown as {@link IllegalArgumentException} after the
+     * reader has moved past them, so the caller can count and skip them.
+     */
+    public abstract ProductImportRow next() throws IOException;
+
+    public void skip(long rows) throws IOException {
+        for (long i = 0; i < rows; i++) {
+            try {
+                if (next() == null) {
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                // Rejected rows were already counted by the run that read them.
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static final class NdjsonReader extends ProductFeedReader {
+        private final ObjectMapper objectMapper;
+
+        private NdjsonReader(BufferedReader reader, ObjectMapper objectMapper) {
+            super(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public ProductImportRow next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            try {
+                return objectMapper.readValue(line, ProductImportRow.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Malformed JSON row: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private static final class CsvReader extends ProductFeedReader {
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        private CsvReader(BufferedReader reader) throws IOException {
+            super(reader);
+            List<String> header = readRecord();
+            if (header == null) {
+                return;
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!columns.containsKey("name") || !columns.containsKey("price")) {
+                throw new IllegalArgumentException("CSV header must contain name and price columns");
+            }
+        }
+
+        @Override
+        public ProductImportRow next() throws IOException {
+            List<String> record = readRecord();
+            if (record == null) {
+                return null;
+            }
+            try {
+                ProductImportRow row = new ProductImportRow();
+                String id = field(record, "id");
+                row.setId(id == null ? null : Long.valueOf(id));
+                row.setName(field(record, "name"));
+                String price = field(record, "price");
+                row.setPrice(price == null ? null : Double.valueOf(price));
+                row.setImage(field(record, "image"));
+                row.setCategory(field(record, "category"));
+                String rating = field(record, "rating");
+                row.setRating(rating == null ? null : Double.valueOf(rating));
+                row.setDescription(field(record, "description"));
+                return row;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed number in CSV row: " + e.getMessage());
+            }
+        }
+
+        private String field(List<String> record, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= record.size()) {
+                return null;
+            }
+            String value = record.get(index);
+            return value.isEmpty() ? null : value;
+        }
+
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            while (c == '\r' || c == '\n') {
+                c = reader.read();
+            }
+            if (c == -1) {
+                return null;
+            }
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r') {
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
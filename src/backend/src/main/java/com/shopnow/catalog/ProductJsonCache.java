@@ -0,0 +1,98 @@
+package com.shopnow.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopnow.dto.ProductDto;
+import com.shopnow.model.Product;
+import com.shopnow.service.ProductService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps each product's JSON representation rendered once, together with a
+ * strong ETag over those bytes, until the product changes. Also tracks a
+ * catalog version that listing endpoints use to build their own ETags.
+ * A rendering is only stored if no change was seen while it was produced, so
+ * a request racing an update cannot park the old bytes in the cache.
+ */
+@Component
+public class ProductJsonCache {
+    private final ObjectWriter writer;
+    private final Cache<Long, RenderedProduct> rendered;
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    public ProductJsonCache(ObjectMapper objectMapper,
+                            @Value("${shopnow.product-cache.max-size:10000}") long maxSize,
+                            @Value("${shopnow.product-cache.ttl:10m}") Duration ttl) {
+        this.writer = objectMapper.writerFor(ProductDto.class);
+        this.rendered = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+    }
+
+    /**
+     * Returns the product's cached rendering, or loads and renders it. The
+     * catalog version is read before loading and checked again inside the
+     * entry's atomic compute, which a change's invalidation of the same key
+     * cannot interleave with: either the change is seen and the result is not
+     * stored, or it lands after the store and removes it.
+     */
+    public RenderedProduct render(Long productId, Function<Long, Product> loader) {
+        RenderedProduct cached = rendered.getIfPresent(productId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = catalogVersion.get();
+        RenderedProduct fresh = render(loader.apply(productId));
+        rendered.asMap().compute(productId, (id, current) ->
+                current != null ? current : catalogVersion.get() == version ? fresh : null);
+        return fresh;
+    }
+
+    /** Strong ETag for any response derived only from catalog contents and the given request key. */
+    public String catalogEtag(String requestKey) {
+        String version = epoch + ":" + catalogVersion.get() + ":" + requestKey;
+        return "\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        catalogVersion.incrementAndGet();
+        rendered.invalidate(event.getProductId());
+    }
+
+    @EventListener(CatalogReloadEvent.class)
+    public void onCatalogReload() {
+        catalogVersion.incrementAndGet();
+        rendered.invalidateAll();
+    }
+
+    private RenderedProduct render(Product product) {
+        try {
+            byte[] json = writer.writeValueAsBytes(ProductService.toDto(product));
+            return new RenderedProduct(json, "\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not render product " + product.getId(), e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RenderedProduct {
+        private final byte[] json;
+        private final String etag;
+    }
+}
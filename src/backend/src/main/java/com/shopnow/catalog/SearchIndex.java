@@ -0,0 +1,560 @@
+package com.shopnow.catalog;
+
+import com.shopnow.model.Product;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product name, category and description with
+ * BM25 ranking. Name and category terms are weighted above description terms.
+ * Documents are product ids; result products are built from the
+ * {@link CatalogIndex} columns rather than kept here. The index is persisted
+ * with the catalog snapshot and restored from it without re-tokenizing.
+ */
+@Component
+public class SearchIndex {
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int NAME_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final CatalogIndex catalogIndex;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<ScoreBuffer> scoreBuffers = ThreadLocal.withInitial(ScoreBuffer::new);
+
+    private Index index = new Index();
+    private Map<Long, Product> pendingChanges;
+
+    public SearchIndex(CatalogIndex catalogIndex) {
+        this.catalogIndex = catalogIndex;
+    }
+
+    /**
+     * Rebuilds the index from the catalog off to the side and swaps it in, so
+     * searches keep answering from the old index until the new one is whole.
+     * Changes that arrive during the rebuild are replayed onto it before the swap.
+     * At startup {@link CatalogSnapshotService} calls this unless it restored the
+     * index from the snapshot.
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(CatalogReloadEvent.class)
+    public synchronized void load() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index rebuilt = new Index();
+        catalogIndex.forEachProduct(product -> rebuilt.put(Document.of(product)));
+
+        lock.writeLock().lock();
+        try {
+            pendingChanges.forEach((productId, product) -> {
+                if (product == null) {
+                    rebuilt.remove(productId);
+                } else {
+                    rebuilt.put(Document.of(product));
+                }
+            });
+            pendingChanges = null;
+            index = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Serves an index restored from a catalog snapshot. */
+    synchronized void restore(Snapshot snapshot) {
+        Index restored = Index.of(snapshot);
+        lock.writeLock().lock();
+        try {
+            index = restored;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns a compacted copy of the index for the snapshot writer, documents in product id order. */
+    Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return index.snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else {
+            put(event.getProduct());
+        }
+    }
+
+    public void put(Product product) {
+        Document document = Document.of(product);
+        lock.writeLock().lock();
+        try {
+            index.put(document);
+            if (pendingChanges != null) {
+                pendingChanges.put(product.getId(), product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            index.remove(productId);
+            if (pendingChanges != null) {
+                pendingChanges.put(productId, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns the best matches, highest score first, built from the catalog's columns. */
+    public List<Product> search(String text, int limit) {
+        List<String> terms = tokenize(text);
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        long[] ranked;
+        lock.readLock().lock();
+        try {
+            Index index = this.index;
+            int documents = index.ordinals.size();
+            if (documents == 0) {
+                return Collections.emptyList();
+            }
+            float averageLength = (float) index.totalLength / documents;
+            ScoreBuffer buffer = scoreBuffers.get();
+            buffer.reset(index.documentTerms.size());
+
+            for (String term : terms.stream().distinct().toList()) {
+                Postings list = index.postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (documents - list.live + 0.5) / (list.live + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.documents[i];
+                    if (doc == Postings.TOMBSTONE) {
+                        continue;
+                    }
+                    int tf = list.frequencies[i];
+                    float norm = K1 * (1 - B + B * index.documentLengths[doc] / averageLength);
+                    buffer.add(doc, idf * tf * (K1 + 1) / (tf + norm));
+                }
+            }
+
+            int[] top = buffer.top(limit);
+            ranked = new long[top.length];
+            for (int i = 0; i < top.length; i++) {
+                ranked[i] = index.productIds[top[i]];
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return catalogIndex.findAll(ranked);
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        String normalized = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            return index.trie.complete(normalized, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static int addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        List<String> tokens = tokenize(text);
+        for (String token : tokens) {
+            frequencies.merge(token, weight, Integer::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    /** A product's weighted term frequencies, analysed outside the lock. */
+    private record Document(long productId, long updatedAt, Map<String, Integer> frequencies, int length) {
+        static Document of(Product product) {
+            Map<String, Integer> frequencies = new LinkedHashMap<>();
+            int length = 0;
+            length += addTerms(frequencies, product.getName(), NAME_WEIGHT);
+            length += addTerms(frequencies, product.getCategory(), CATEGORY_WEIGHT);
+            length += addTerms(frequencies, product.getDescription(), DESCRIPTION_WEIGHT);
+            long updatedAt = product.getUpdatedAt() == null ? 0 : Timestamp.valueOf(product.getUpdatedAt()).getTime();
+            return new Document(product.getId(), updatedAt, frequencies, length);
+        }
+    }
+
+    /**
+     * The index as persisted in a catalog snapshot: documents numbered densely in
+     * product id order, with each term's live postings as document numbers and
+     * frequencies. The update times tie the documents to the catalog columns
+     * written alongside them.
+     */
+    record Snapshot(long[] productIds, long[] updatedAt, int[] lengths,
+                    String[] terms, int[][] documents, int[][] frequencies) {
+    }
+
+    /** One generation of the index; replaced whole on reload. */
+    private static final class Index {
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final PrefixTrie trie = new PrefixTrie();
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private final List<String[]> documentTerms = new ArrayList<>();
+        private final List<int[]> documentPositions = new ArrayList<>();
+        private long[] productIds = new long[16];
+        private long[] updatedAt = new long[16];
+        private int[] documentLengths = new int[16];
+        private final List<Integer> freeOrdinals = new ArrayList<>();
+        private long totalLength;
+
+        void put(Document document) {
+            Integer existing = ordinals.get(document.productId());
+            if (existing != null) {
+                unlink(existing);
+            }
+            int ordinal = existing != null ? existing : allocateOrdinal();
+            ordinals.put(document.productId(), ordinal);
+            productIds[ordinal] = document.productId();
+            updatedAt[ordinal] = document.updatedAt();
+            String[] terms = document.frequencies().keySet().toArray(new String[0]);
+            int[] positions = new int[terms.length];
+            documentTerms.set(ordinal, terms);
+            documentPositions.set(ordinal, positions);
+            documentLengths[ordinal] = document.length();
+            totalLength += document.length();
+            for (int slot = 0; slot < terms.length; slot++) {
+                Postings list = postings.get(terms[slot]);
+                if (list == null) {
+                    list = new Postings();
+                    postings.put(terms[slot], list);
+                }
+                positions[slot] = list.add(ordinal, document.frequencies().get(terms[slot]), slot);
+                trie.add(terms[slot]);
+            }
+        }
+
+        void remove(Long productId) {
+            Integer ordinal = ordinals.remove(productId);
+            if (ordinal != null) {
+                unlink(ordinal);
+                documentTerms.set(ordinal, null);
+                documentPositions.set(ordinal, null);
+                freeOrdinals.add(ordinal);
+            }
+        }
+
+        static Index of(Snapshot snapshot) {
+            Index index = new Index();
+            int count = snapshot.productIds().length;
+            int capacity = Math.max(16, count);
+            index.productIds = Arrays.copyOf(snapshot.productIds(), capacity);
+            index.updatedAt = Arrays.copyOf(snapshot.updatedAt(), capacity);
+            index.documentLengths = Arrays.copyOf(snapshot.lengths(), capacity);
+            int[] termCounts = new int[count];
+            for (int[] documents : snapshot.documents()) {
+                for (int document : documents) {
+                    termCounts[document]++;
+                }
+            }
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                index.ordinals.put(snapshot.productIds()[ordinal], ordinal);
+                index.documentTerms.add(new String[termCounts[ordinal]]);
+                index.documentPositions.add(new int[termCounts[ordinal]]);
+                index.totalLength += snapshot.lengths()[ordinal];
+            }
+
+            int[] filled = new int[count];
+            for (int t = 0; t < snapshot.terms().length; t++) {
+                String term = snapshot.terms()[t];
+                int[] documents = snapshot.documents()[t];
+                Postings list = new Postings(documents.length);
+                for (int i = 0; i < documents.length; i++) {
+                    int document = documents[i];
+                    int slot = filled[document]++;
+                    index.documentTerms.get(document)[slot] = term;
+                    index.documentPositions.get(document)[slot] = list.add(document, snapshot.frequencies()[t][i], slot);
+                }
+                index.postings.put(term, list);
+                index.trie.add(term, documents.length);
+            }
+            return index;
+        }
+
+        Snapshot snapshot() {
+            int count = ordinals.size();
+            long[] ids = new long[count];
+            int i = 0;
+            for (Long productId : ordinals.keySet()) {
+                ids[i++] = productId;
+            }
+            Arrays.sort(ids);
+            long[] updated = new long[count];
+            int[] lengths = new int[count];
+            int[] dense = new int[documentTerms.size()];
+            for (int document = 0; document < count; document++) {
+                int ordinal = ordinals.get(ids[document]);
+                dense[ordinal] = document;
+                updated[document] = updatedAt[ordinal];
+                lengths[document] = documentLengths[ordinal];
+            }
+
+            String[] terms = postings.keySet().toArray(new String[0]);
+            int[][] documents = new int[terms.length][];
+            int[][] frequencies = new int[terms.length][];
+            for (int t = 0; t < terms.length; t++) {
+                Postings list = postings.get(terms[t]);
+                documents[t] = new int[list.live];
+                frequencies[t] = new int[list.live];
+                int kept = 0;
+                for (int p = 0; p < list.size; p++) {
+                    if (list.documents[p] != Postings.TOMBSTONE) {
+                        documents[t][kept] = dense[list.documents[p]];
+                        frequencies[t][kept] = list.frequencies[p];
+                        kept++;
+                    }
+                }
+            }
+            return new Snapshot(ids, updated, lengths, terms, documents, frequencies);
+        }
+
+        private int allocateOrdinal() {
+            if (!freeOrdinals.isEmpty()) {
+                return freeOrdinals.remove(freeOrdinals.size() - 1);
+            }
+            int ordinal = documentTerms.size();
+            documentTerms.add(null);
+            documentPositions.add(null);
+            if (ordinal == documentLengths.length) {
+                productIds = Arrays.copyOf(productIds, ordinal * 2);
+                updatedAt = Arrays.copyOf(updatedAt, ordinal * 2);
+                documentLengths = Arrays.copyOf(documentLengths, ordinal * 2);
+            }
+            return ordinal;
+        }
+
+        private void unlink(int ordinal) {
+            String[] terms = documentTerms.get(ordinal);
+            int[] positions = documentPositions.get(ordinal);
+            for (int slot = 0; slot < terms.length; slot++) {
+                Postings list = postings.get(terms[slot]);
+                list.remove(positions[slot]);
+                if (list.live == 0) {
+                    postings.remove(terms[slot]);
+                } else if (list.size - list.live > list.live) {
+                    list.compact(documentPositions);
+                }
+                trie.remove(terms[slot]);
+            }
+            totalLength -= documentLengths[ordinal];
+            documentLengths[ordinal] = 0;
+        }
+    }
+
+    /**
+     * One term's documents. Each document remembers where its entry sits, so a
+     * removal tombstones that position directly; the list is compacted once
+     * tombstones outnumber live entries.
+     */
+    private static final class Postings {
+        static final int TOMBSTONE = -1;
+
+        private int[] documents;
+        private int[] frequencies;
+        private int[] slots;
+        private int size;
+        private int live;
+
+        Postings() {
+            this(4);
+        }
+
+        Postings(int capacity) {
+            documents = new int[Math.max(4, capacity)];
+            frequencies = new int[documents.length];
+            slots = new int[documents.length];
+        }
+
+        /** Appends an entry and returns its position; {@code slot} is the term's index in the document. */
+        int add(int document, int frequency, int slot) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            documents[size] = document;
+            frequencies[size] = frequency;
+            slots[size] = slot;
+            live++;
+            return size++;
+        }
+
+        void remove(int position) {
+            documents[position] = TOMBSTONE;
+            live--;
+        }
+
+        /** Drops the tombstones and points each moved document at its entry's new position. */
+        void compact(List<int[]> documentPositions) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (documents[i] == TOMBSTONE) {
+                    continue;
+                }
+                documents[kept] = documents[i];
+                frequencies[kept] = frequencies[i];
+                slots[kept] = slots[i];
+                documentPositions.get(documents[kept])[slots[kept]] = kept;
+                kept++;
+            }
+            size = kept;
+        }
+    }
+
+    /**
+     * Per-thread score accumulator. Top-k selection runs a bounded min-heap over
+     * parallel document and score arrays, so ranking a query that matches most of
+     * the catalog neither boxes nor allocates beyond the result.
+     */
+    private static final class ScoreBuffer {
+        private float[] scores = new float[0];
+        private int[] touched = new int[16];
+        private int touchedCount;
+        private int[] heapDocuments = new int[16];
+        private float[] heapScores = new float[16];
+
+        void reset(int capacity) {
+            for (int i = 0; i < touchedCount; i++) {
+                if (touched[i] < scores.length) {
+                    scores[touched[i]] = 0;
+                }
+            }
+            touchedCount = 0;
+            if (scores.length < capacity) {
+                scores = new float[capacity];
+            }
+        }
+
+        void add(int document, float score) {
+            if (scores[document] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = document;
+            }
+            scores[document] += score;
+        }
+
+        /** Returns the touched documents with the highest scores, best first; ties go to the lower ordinal. */
+        int[] top(int limit) {
+            int capacity = Math.min(limit, touchedCount);
+            if (heapDocuments.length < capacity) {
+                heapDocuments = new int[capacity];
+                heapScores = new float[capacity];
+            }
+            int size = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int document = touched[i];
+                float score = scores[document];
+                if (size < capacity) {
+                    siftUp(size++, document, score);
+                } else if (worse(heapScores[0], heapDocuments[0], score, document)) {
+                    siftDown(0, size, document, score);
+                }
+            }
+            int[] ranked = new int[size];
+            while (size > 0) {
+                ranked[size - 1] = heapDocuments[0];
+                size--;
+                siftDown(0, size, heapDocuments[size], heapScores[size]);
+            }
+            return ranked;
+        }
+
+        private void siftUp(int position, int document, float score) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!worse(score, document, heapScores[parent], heapDocuments[parent])) {
+                    break;
+                }
+                heapDocuments[position] = heapDocuments[parent];
+                heapScores[position] = heapScores[parent];
+                position = parent;
+            }
+            heapDocuments[position] = document;
+            heapScores[position] = score;
+        }
+
+        private void siftDown(int position, int size, int document, float score) {
+            int half = size >>> 1;
+            while (position < half) {
+                int child = 2 * position + 1;
+                if (child + 1 < size && worse(heapScores[child + 1], heapDocuments[child + 1],
+                        heapScores[child], heapDocuments[child])) {
+                    child++;
+                }
+                if (!worse(heapScores[child], heapDocuments[child], score, document)) {
+                    break;
+                }
+                heapDocuments[position] = heapDocuments[child];
+                heapScores[position] = heapScores[child];
+                position = child;
+            }
+            heapDocuments[position] = document;
+            heapScores[position] = score;
+        }
+
+        private static boolean worse(float score, int document, float otherScore, int otherDocument) {
+            return score < otherScore || (score == otherScore && document > otherDocument);
+        }
+    }
+}
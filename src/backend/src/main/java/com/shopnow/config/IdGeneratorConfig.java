@@ -0,0 +1,16 @@
+package com.shopnow.config;
+
+import com.shopnow.id.IdGenerator;
+import com.shopnow.id.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public IdGenerator idGenerator(@Value("${shopnow.id.node-id:0}") long nodeId) {
+        return new SnowflakeIdGenerator(nodeId);
+    }
+}
@@ -3,6 +3,8 @@ package com.shopnow.config;
 import com.shopnow.auth.JwtAuthenticationFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -14,7 +16,14 @@ import java.util.Arrays;
 
 @Configuration
 @EnableWebSecurity
+@EnableMethodSecurity
 public class SecurityConfig {
+    /**
+     * Method-security expression for handlers keyed on a {@code userId} path
+     * variable: the caller may only act as the user their token was issued to.
+     */
+    public static final String OWNER = "#userId == principal.id";
+
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
 
     public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter) {
@@ -27,6 +36,25 @@ public class SecurityConfig {
             .securityMatcher("/api/**")
             .authorizeHttpRequests(authorize -> authorize
                 .requestMatchers("/api/auth/login", "/api/auth/register", "/api/health").permitAll()
+                .requestMatchers("/api/analytics/**").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET,
+                    "/api/products/cache/stats",
+                    "/api/inventory/stats",
+                    "/api/cart/store/stats",
+                    "/api/cart/guest/stats",
+                    "/api/auth/token-cache/stats",
+                    "/api/orders/archive/stats",
+                    "/api/orders/checkout/stats",
+                    "/api/orders/fulfilment/stats",
+                    "/api/orders/status-stream/stats").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET, "/api/products/**").permitAll()
+                .requestMatchers("/api/guest-cart/**", "/api/guest-cart").permitAll()
+                .requestMatchers("/api/imports/**").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/inventory/*/restock").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/products", "/api/products/**").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.PUT, "/api/products/**").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.DELETE, "/api/products/**").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/orders/archive/run").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .sessionManagement(session -> session
@@ -0,0 +1,56 @@
+package com.shopnow.controller;
+
+import com.shopnow.analytics.SalesRollupEngine;
+import com.shopnow.dto.SalesRollupDto;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+    private final SalesRollupEngine salesRollupEngine;
+
+    public AnalyticsController(SalesRollupEngine salesRollupEngine) {
+        this.salesRollupEngine = salesRollupEngine;
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<SalesRollupDto> summary(@RequestParam(defaultValue = "PT1H") Duration window) {
+        return ResponseEntity.ok(salesRollupEngine.summary(window));
+    }
+
+    @GetMapping("/categories")
+    public ResponseEntity<List<SalesRollupDto>> categories(@RequestParam(defaultValue = "PT1H") Duration window) {
+        return ResponseEntity.ok(salesRollupEngine.categories(window));
+    }
+
+    @GetMapping("/products/top")
+    public ResponseEntity<List<SalesRollupDto>> topProducts(
+            @RequestParam(defaultValue = "PT1H") Duration window,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(salesRollupEngine.topProducts(window, Math.min(limit, 100)));
+    }
+
+    @GetMapping("/timeline")
+    public ResponseEntity<List<SalesRollupDto>> timeline(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Long productId,
+            @RequestParam(defaultValue = "PT1M") Duration bucket,
+            @RequestParam(defaultValue = "PT1H") Duration span) {
+        return ResponseEntity.ok(salesRollupEngine.timeline(category, productId, bucket, span));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(salesRollupEngine.stats());
+    }
+
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuild() {
+        return ResponseEntity.ok(salesRollupEngine.rebuild());
+    }
+}
@@ -1,17 +1,19 @@
 package com.shopnow.controller;
 
 import com.shopnow.auth.JwtTokenProvider;
+import com.shopnow.auth.JwtUserPrincipal;
 import com.shopnow.dto.AuthRequest;
 import com.shopnow.dto.AuthResponse;
 import com.shopnow.dto.RegisterRequest;
 import com.shopnow.dto.UserDto;
 import com.shopnow.model.User;
+import com.shopnow.service.CartService;
 import com.shopnow.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -24,17 +26,26 @@ public class AuthController {
     private final UserService userService;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
+    private final CartService cartService;
 
-    public AuthController(UserService userService, AuthenticationManager authenticationManager, JwtTokenProvider jwtTokenProvider) {
+    public AuthController(UserService userService, AuthenticationManager authenticationManager,
+                          JwtTokenProvider jwtTokenProvider, CartService cartService) {
         this.userService = userService;
         this.authenticationManager = authenticationManager;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.cartService = cartService;
+    }
+
+    @GetMapping("/token-cache/stats")
+    public ResponseEntity<Map<String, Object>> tokenCacheStats() {
+        return ResponseEntity.ok(jwtTokenProvider.stats());
     }
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
         User user = userService.register(request);
-        String token = jwtTokenProvider.generateToken(user.getEmail());
+        cartService.mergeGuestCart(user, request.getGuestCartToken());
+        String token = jwtTokenProvider.generateToken(user, UserService.authorities(user));
         
         Map<String, Object> response = new HashMap<>();
         response.put("token", token);
@@ -50,8 +61,9 @@ public class AuthController {
         );
         
         if (authentication.isAuthenticated()) {
-            String token = jwtTokenProvider.generateToken(authRequest.getEmail());
             User user = userService.findByEmail(authRequest.getEmail());
+            String token = jwtTokenProvider.generateToken(user, authentication.getAuthorities());
+            cartService.mergeGuestCart(user, authRequest.getGuestCartToken());
             
             AuthResponse response = new AuthResponse(token, new UserDto(
                 user.getId().toString(),
@@ -67,14 +79,12 @@ public class AuthController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<UserDto> getCurrentUser() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userService.findByEmail(email);
+    public ResponseEntity<UserDto> getCurrentUser(@AuthenticationPrincipal JwtUserPrincipal principal) {
         UserDto userDto = new UserDto(
-                user.getId().toString(),
-                user.getEmail(),
-                user.getFirstName(),
-                user.getLastName()
+                principal.getId().toString(),
+                principal.getEmail(),
+                principal.getFirstName(),
+                principal.getLastName()
         );
         return ResponseEntity.ok(userDto);
     }
@@ -1,52 +1,91 @@
 package com.shopnow.controller;
 
+import com.shopnow.cart.CartStore;
+import com.shopnow.config.SecurityConfig;
+import com.shopnow.cart.GuestCartStore;
+import com.shopnow.dto.CartBatchRequest;
+import com.shopnow.dto.CartBatchResponse;
+import com.shopnow.dto.CartResponse;
 import com.shopnow.model.CartItem;
 import com.shopnow.model.User;
 import com.shopnow.service.CartService;
 import com.shopnow.service.UserService;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
     private final CartService cartService;
     private final UserService userService;
+    private final CartStore cartStore;
+    private final GuestCartStore guestCartStore;
 
-    public CartController(CartService cartService, UserService userService) {
+    public CartController(CartService cartService, UserService userService, CartStore cartStore,
+                          GuestCartStore guestCartStore) {
         this.cartService = cartService;
         this.userService = userService;
+        this.cartStore = cartStore;
+        this.guestCartStore = guestCartStore;
+    }
+
+    @GetMapping("/store/stats")
+    public ResponseEntity<Map<String, Object>> storeStats() {
+        return ResponseEntity.ok(cartStore.stats());
+    }
+
+    @GetMapping("/guest/stats")
+    public ResponseEntity<Map<String, Object>> guestStats() {
+        return ResponseEntity.ok(guestCartStore.stats());
     }
 
     @GetMapping("/{userId}")
-    public ResponseEntity<List<CartItem>> getCart(@PathVariable Long userId) {
-        User user = userService.findById(userId);
-        return ResponseEntity.ok(cartService.getCartItems(user));
+    @PreAuthorize(SecurityConfig.OWNER)
+    public ResponseEntity<CartResponse> getCart(@PathVariable Long userId) {
+        return ResponseEntity.ok(cartService.getCart(userId));
     }
 
     @PostMapping("/{userId}/items")
+    @PreAuthorize(SecurityConfig.OWNER)
     public ResponseEntity<CartItem> addToCart(
             @PathVariable Long userId,
             @RequestParam Long productId,
-            @RequestParam Integer quantity) {
-        User user = userService.findById(userId);
+            @RequestParam Integer quantity,
+            @RequestParam(defaultValue = "set") String mode) {
+        User user = userService.reference(userId);
+        if ("add".equalsIgnoreCase(mode)) {
+            return ResponseEntity.ok(cartService.incrementCart(user, productId, quantity));
+        }
         return ResponseEntity.ok(cartService.addToCart(user, productId, quantity));
     }
 
+    @PostMapping("/{userId}/items/batch")
+    @PreAuthorize(SecurityConfig.OWNER)
+    public ResponseEntity<CartBatchResponse> applyBatch(
+            @PathVariable Long userId,
+            @RequestBody CartBatchRequest request) {
+        User user = userService.reference(userId);
+        CartBatchResponse response = cartService.applyBatch(user, request.getOperations());
+        return response.isApplied() ? ResponseEntity.ok(response) : ResponseEntity.badRequest().body(response);
+    }
+
     @DeleteMapping("/{userId}/items/{productId}")
+    @PreAuthorize(SecurityConfig.OWNER)
     public ResponseEntity<Void> removeFromCart(
             @PathVariable Long userId,
             @PathVariable Long productId) {
-        User user = userService.findById(userId);
+        User user = userService.reference(userId);
         cartService.removeFromCart(user, productId);
         return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/{userId}")
+    @PreAuthorize(SecurityConfig.OWNER)
     public ResponseEntity<Void> clearCart(@PathVariable Long userId) {
-        User user = userService.findById(userId);
+        User user = userService.reference(userId);
         cartService.clearCart(user);
         return ResponseEntity.ok().build();
     }
@@ -0,0 +1,79 @@
+package com.shopnow.controller;
+
+import com.shopnow.cart.GuestCartStore;
+import com.shopnow.catalog.CatalogIndex;
+import com.shopnow.dto.CartItemDto;
+import com.shopnow.dto.CartResponse;
+import com.shopnow.model.Product;
+import com.shopnow.service.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/guest-cart")
+public class GuestCartController {
+    private final GuestCartStore guestCartStore;
+    private final CatalogIndex catalogIndex;
+
+    public GuestCartController(GuestCartStore guestCartStore, CatalogIndex catalogIndex) {
+        this.guestCartStore = guestCartStore;
+        this.catalogIndex = catalogIndex;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, String>> createCart(HttpServletRequest request) {
+        if (!guestCartStore.tryAcquireCreate(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok(Map.of("token", guestCartStore.create()));
+    }
+
+    @GetMapping("/{token}")
+    public ResponseEntity<CartResponse> getCart(@PathVariable String token) {
+        return ResponseEntity.ok(toResponse(guestCartStore.items(token)));
+    }
+
+    @PostMapping("/{token}/items")
+    public ResponseEntity<CartResponse> addToCart(
+            @PathVariable String token,
+            @RequestParam Long productId,
+            @RequestParam Integer quantity,
+            @RequestParam(defaultValue = "set") String mode) {
+        catalogIndex.find(productId).orElseThrow(() -> new RuntimeException("Product not found"));
+        Map<Long, Integer> items = "add".equalsIgnoreCase(mode)
+                ? guestCartStore.add(token, productId, quantity)
+                : guestCartStore.set(token, productId, quantity);
+        return ResponseEntity.ok(toResponse(items));
+    }
+
+    @DeleteMapping("/{token}/items/{productId}")
+    public ResponseEntity<CartResponse> removeFromCart(
+            @PathVariable String token,
+            @PathVariable Long productId) {
+        return ResponseEntity.ok(toResponse(guestCartStore.remove(token, productId)));
+    }
+
+    @DeleteMapping("/{token}")
+    public ResponseEntity<Void> deleteCart(@PathVariable String token) {
+        guestCartStore.delete(token);
+        return ResponseEntity.ok().build();
+    }
+
+    // Product details come from the in-memory catalog so guest traffic never touches the database.
+    private CartResponse toResponse(Map<Long, Integer> items) {
+        List<CartItemDto> lines = new ArrayList<>(items.size());
+        items.forEach((productId, quantity) -> {
+            Product product = catalogIndex.find(productId).orElse(null);
+            if (product != null) {
+                lines.add(new CartItemDto(ProductService.toDto(product), quantity));
+            }
+        });
+        return new CartResponse(lines);
+    }
+}
@@ -0,0 +1,35 @@
+package com.shopnow.controller;
+
+import com.shopnow.model.ImportJob;
+import com.shopnow.service.ProductImportService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/imports")
+public class ImportController {
+    private final ProductImportService productImportService;
+
+    public ImportController(ProductImportService productImportService) {
+        this.productImportService = productImportService;
+    }
+
+    @PostMapping
+    public ResponseEntity<ImportJob> startImport(
+            @RequestParam String source,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = ProductImportService.INSERT) String mode,
+            @RequestParam(required = false) Integer chunkSize) {
+        return ResponseEntity.ok(productImportService.startImport(source, format, mode, chunkSize));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJob> getImport(@PathVariable Long jobId) {
+        return ResponseEntity.ok(productImportService.getJob(jobId));
+    }
+
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<ImportJob> resumeImport(@PathVariable Long jobId) {
+        return ResponseEntity.ok(productImportService.resumeImport(jobId));
+    }
+}
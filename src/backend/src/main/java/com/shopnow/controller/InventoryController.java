@@ -0,0 +1,39 @@
+package com.shopnow.controller;
+
+import com.shopnow.inventory.InventoryEngine;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/inventory")
+public class InventoryController {
+    private final InventoryEngine inventoryEngine;
+
+    public InventoryController(InventoryEngine inventoryEngine) {
+        this.inventoryEngine = inventoryEngine;
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(inventoryEngine.stats());
+    }
+
+    @GetMapping("/{productId}")
+    public ResponseEntity<Map<String, Object>> getAvailability(@PathVariable Long productId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("productId", productId);
+        response.put("available", inventoryEngine.available(productId));
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/{productId}/restock")
+    public ResponseEntity<Map<String, Object>> restock(@PathVariable Long productId, @RequestParam Integer quantity) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("productId", productId);
+        response.put("available", inventoryEngine.restock(productId, quantity));
+        return ResponseEntity.ok(response);
+    }
+}
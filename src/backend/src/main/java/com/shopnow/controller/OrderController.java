@@ -1,37 +1,101 @@
 package com.shopnow.controller;
 
+import com.shopnow.archive.OrderArchiver;
+import com.shopnow.config.SecurityConfig;
 import com.shopnow.dto.CreateOrderItemRequest;
+import com.shopnow.dto.OrderHistoryResponse;
 import com.shopnow.model.Order;
+import com.shopnow.order.CheckoutBatcher;
+import com.shopnow.order.FulfilmentQueue;
+import com.shopnow.order.OrderStatusStream;
 import com.shopnow.service.OrderService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
     private final OrderService orderService;
+    private final FulfilmentQueue fulfilmentQueue;
+    private final CheckoutBatcher checkoutBatcher;
+    private final OrderArchiver orderArchiver;
+    private final OrderStatusStream orderStatusStream;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, FulfilmentQueue fulfilmentQueue,
+                           CheckoutBatcher checkoutBatcher, OrderArchiver orderArchiver,
+                           OrderStatusStream orderStatusStream) {
         this.orderService = orderService;
+        this.fulfilmentQueue = fulfilmentQueue;
+        this.checkoutBatcher = checkoutBatcher;
+        this.orderArchiver = orderArchiver;
+        this.orderStatusStream = orderStatusStream;
+    }
+
+    @GetMapping("/archive/stats")
+    public ResponseEntity<Map<String, Object>> archiveStats() {
+        return ResponseEntity.ok(orderArchiver.stats());
+    }
+
+    @PostMapping("/archive/run")
+    public ResponseEntity<Map<String, Object>> runArchival() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("archived", orderArchiver.run());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/checkout/stats")
+    public ResponseEntity<Map<String, Object>> checkoutStats() {
+        return ResponseEntity.ok(checkoutBatcher.stats());
+    }
+
+    @GetMapping("/fulfilment/stats")
+    public ResponseEntity<Map<String, Object>> fulfilmentStats() {
+        return ResponseEntity.ok(fulfilmentQueue.stats());
+    }
+
+    @GetMapping("/status-stream/stats")
+    public ResponseEntity<Map<String, Object>> statusStreamStats() {
+        return ResponseEntity.ok(orderStatusStream.stats());
+    }
+
+    @GetMapping(value = "/{userId}/status-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize(SecurityConfig.OWNER)
+    public SseEmitter streamStatus(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Long orderId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return orderStatusStream.subscribe(userId, orderId, lastEventId);
     }
 
     @GetMapping("/{userId}")
-    public ResponseEntity<List<Order>> getUserOrders(@PathVariable Long userId) {
-        return ResponseEntity.ok(orderService.getUserOrders(userId));
+    @PreAuthorize(SecurityConfig.OWNER)
+    public ResponseEntity<OrderHistoryResponse> getUserOrders(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(orderService.getUserOrders(userId, before, size));
     }
 
     @GetMapping("/details/{orderId}")
+    @PostAuthorize("returnObject.body.user.id == principal.id")
     public ResponseEntity<Order> getOrderDetails(@PathVariable Long orderId) {
         return ResponseEntity.ok(orderService.getOrder(orderId));
     }
 
     @PostMapping("/{userId}")
+    @PreAuthorize(SecurityConfig.OWNER)
     public ResponseEntity<Order> createOrder(
             @PathVariable Long userId,
             @RequestParam String shippingAddress,
-            @RequestParam String paymentMethod) {
-        return ResponseEntity.ok(orderService.createOrder(userId, shippingAddress, paymentMethod));
+            @RequestParam String paymentMethod,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return ResponseEntity.ok(orderService.createOrder(userId, shippingAddress, paymentMethod, idempotencyKey));
     }
 }
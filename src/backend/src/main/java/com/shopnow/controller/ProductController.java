@@ -0,0 +1,164 @@
+package com.shopnow.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.shopnow.catalog.CatalogIndex;
+import com.shopnow.catalog.CatalogQuery;
+import com.shopnow.catalog.CatalogResult;
+import com.shopnow.catalog.ProductCache;
+import com.shopnow.catalog.ProductJsonCache;
+import com.shopnow.catalog.ProductJsonCache.RenderedProduct;
+import com.shopnow.catalog.SearchIndex;
+import com.shopnow.dto.ProductDto;
+import com.shopnow.dto.ProductFilterResponse;
+import com.shopnow.dto.ProductPageResponse;
+import com.shopnow.dto.ProductRequest;
+import com.shopnow.service.ProductService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/products")
+public class ProductController {
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
+    private final ProductService productService;
+    private final CatalogIndex catalogIndex;
+    private final SearchIndex searchIndex;
+    private final ProductCache productCache;
+    private final ProductJsonCache productJsonCache;
+    private final ObjectWriter productWriter;
+
+    public ProductController(ProductService productService, CatalogIndex catalogIndex, SearchIndex searchIndex,
+                             ProductCache productCache, ProductJsonCache productJsonCache, ObjectMapper objectMapper) {
+        this.productService = productService;
+        this.catalogIndex = catalogIndex;
+        this.searchIndex = searchIndex;
+        this.productCache = productCache;
+        this.productJsonCache = productJsonCache;
+        this.productWriter = objectMapper.writerFor(ProductDto.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @GetMapping
+    public ResponseEntity<ProductPageResponse> listProducts(
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest request) {
+        String etag = productJsonCache.catalogEtag("list:" + sort + ":" + category + ":" + cursor + ":" + size);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).eTag(etag).build();
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).eTag(etag).body(productService.listProducts(sort, category, cursor, size));
+    }
+
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public void streamProducts(@RequestParam(required = false) String category, HttpServletResponse response)
+            throws IOException {
+        response.setContentType("application/x-ndjson");
+        OutputStream out = response.getOutputStream();
+        productService.streamProducts(category, product -> {
+            try {
+                productWriter.writeValue(out, ProductService.toDto(product));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    @GetMapping("/filter")
+    public ResponseEntity<ProductFilterResponse> filter(
+            @RequestParam(required = false) Set<String> categories,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Set<Integer> ratings,
+            @RequestParam(defaultValue = "50") int limit,
+            WebRequest request) {
+        String etag = productJsonCache.catalogEtag("filter:" + categories + ":" + minPrice + ":" + maxPrice
+                + ":" + ratings + ":" + limit);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).eTag(etag).build();
+        }
+        CatalogQuery query = new CatalogQuery();
+        query.setCategories(categories);
+        query.setMinPrice(minPrice);
+        query.setMaxPrice(maxPrice);
+        query.setRatings(ratings);
+        query.setLimit(Math.max(1, Math.min(limit, 500)));
+
+        CatalogResult result = catalogIndex.search(query);
+        return ResponseEntity.ok().cacheControl(REVALIDATE).eTag(etag).body(new ProductFilterResponse(
+                result.getProducts().stream().map(ProductService::toDto).toList(),
+                result.getTotal(),
+                result.getCategoryCounts(),
+                result.getRatingCounts()
+        ));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductDto>> search(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(searchIndex.search(query, Math.min(limit, 100)).stream()
+                .map(ProductService::toDto)
+                .toList());
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<String>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(searchIndex.suggest(prefix, Math.min(limit, 50)));
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(productCache.stats());
+    }
+
+    @GetMapping("/{productId}")
+    public ResponseEntity<byte[]> getProduct(@PathVariable Long productId, WebRequest request) {
+        RenderedProduct rendered = productJsonCache.render(productId, productService::findById);
+        if (request.checkNotModified(rendered.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).eTag(rendered.getEtag()).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(REVALIDATE)
+                .eTag(rendered.getEtag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(rendered.getJson());
+    }
+
+    @PostMapping
+    public ResponseEntity<ProductDto> createProduct(@RequestBody ProductRequest request) {
+        return ResponseEntity.ok(ProductService.toDto(productService.save(ProductService.fromRequest(null, request))));
+    }
+
+    @PutMapping("/{productId}")
+    public ResponseEntity<ProductDto> updateProduct(@PathVariable Long productId, @RequestBody ProductRequest request) {
+        productService.findById(productId);
+        return ResponseEntity.ok(ProductService.toDto(productService.save(ProductService.fromRequest(productId, request))));
+    }
+
+    @DeleteMapping("/{productId}")
+    public ResponseEntity<Void> deleteProduct(@PathVariable Long productId) {
+        productService.delete(productId);
+        return ResponseEntity.ok().build();
+    }
+}
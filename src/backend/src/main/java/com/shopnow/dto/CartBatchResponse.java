@@ -0,0 +1,16 @@
+package com.shopnow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchResponse {
+    private boolean applied;
+    private List<CartOperationResult> results;
+    private List<CartItemDto> items;
+}
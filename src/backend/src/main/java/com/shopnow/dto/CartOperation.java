@@ -0,0 +1,18 @@
+package com.shopnow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperation {
+    public static final String ADD = "ADD";
+    public static final String UPDATE = "UPDATE";
+    public static final String REMOVE = "REMOVE";
+
+    private String op;
+    private Long productId;
+    private Integer quantity;
+}
@@ -0,0 +1,17 @@
+package com.shopnow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationResult {
+    private int index;
+    private String op;
+    private Long productId;
+    private String status;
+    private Integer quantity;
+    private String error;
+}
@@ -0,0 +1,19 @@
+package com.shopnow.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderHistoryResponse {
+    private List<OrderSummaryDto> orders;
+    // Pass as "before" to fetch the next page; null on the last page.
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long nextCursor;
+}
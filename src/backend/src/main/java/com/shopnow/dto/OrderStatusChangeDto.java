@@ -0,0 +1,20 @@
+package com.shopnow.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusChangeDto {
+    private Long id;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long orderId;
+    private String status;
+    private LocalDateTime changedAt;
+}
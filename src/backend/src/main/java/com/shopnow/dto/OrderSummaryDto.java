@@ -0,0 +1,22 @@
+package com.shopnow.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryDto {
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+    private String orderNumber;
+    private double total;
+    private String status;
+    private LocalDateTime createdAt;
+    private int itemCount;
+}
@@ -0,0 +1,18 @@
+package com.shopnow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFilterResponse {
+    private List<ProductDto> items;
+    private int total;
+    private Map<String, Integer> categoryCounts;
+    private Map<Integer, Integer> ratingCounts;
+}
@@ -0,0 +1,16 @@
+package com.shopnow.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProductImportRow {
+    private Long id;
+    private String name;
+    private Double price;
+    private String image;
+    private String category;
+    private Double rating;
+    private String description;
+}
@@ -0,0 +1,13 @@
+package com.shopnow.dto;
+
+import lombok.Data;
+
+@Data
+public class ProductRequest {
+    private String name;
+    private Double price;
+    private String image;
+    private String category;
+    private Double rating;
+    private String description;
+}
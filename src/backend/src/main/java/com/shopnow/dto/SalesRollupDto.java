@@ -0,0 +1,19 @@
+package com.shopnow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollupDto {
+    private String key;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private double revenue;
+    private long units;
+    private long orders;
+}
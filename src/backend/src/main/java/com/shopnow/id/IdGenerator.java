@@ -0,0 +1,12 @@
+package com.shopnow.id;
+
+/** Source of unique 64-bit entity ids. Implementations must be thread-safe. */
+public interface IdGenerator {
+    long nextId();
+
+    /** Reserves {@code count} consecutive ids, at most {@link #maxBlockSize()}, and returns the first. */
+    long nextIds(int count);
+
+    /** The largest block {@link #nextIds(int)} can reserve at once. */
+    int maxBlockSize();
+}
@@ -0,0 +1,6 @@
+package com.shopnow.id;
+
+/** An entity that derives a human-facing number from its generated id. */
+public interface NumberedEntity {
+    void assignNumber(long id);
+}
@@ -0,0 +1,59 @@
+package com.shopnow.id;
+
+/**
+ * Human-facing order numbers: the order id in fixed-width Crockford base32.
+ * The alphabet is in ASCII order and every number has the same length, so
+ * order numbers sort the same way as the time-ordered ids they encode.
+ */
+public final class OrderNumbers {
+    private static final String PREFIX = "SN-";
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LENGTH = 13;
+
+    private OrderNumbers() {
+    }
+
+    public static String format(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Order id must not be negative: " + id);
+        }
+        char[] digits = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            digits[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return PREFIX + new String(digits);
+    }
+
+    public static long parse(String orderNumber) {
+        String digits = orderNumber.startsWith(PREFIX) ? orderNumber.substring(PREFIX.length()) : orderNumber;
+        if (digits.length() != LENGTH) {
+            throw new IllegalArgumentException("Invalid order number: " + orderNumber);
+        }
+        long id = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int value = decode(Character.toUpperCase(digits.charAt(i)));
+            if (value < 0 || (i == 0 && value > 15)) {
+                throw new IllegalArgumentException("Invalid order number: " + orderNumber);
+            }
+            id = (id << 5) | value;
+        }
+        return id;
+    }
+
+    // Crockford decoding also accepts the look-alikes O, I and L.
+    private static int decode(char c) {
+        return switch (c) {
+            case 'O' -> 0;
+            case 'I', 'L' -> 1;
+            default -> {
+                for (int i = 0; i < ALPHABET.length; i++) {
+                    if (ALPHABET[i] == c) {
+                        yield i;
+                    }
+                }
+                yield -1;
+            }
+        };
+    }
+}
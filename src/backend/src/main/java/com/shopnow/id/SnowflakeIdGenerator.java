@@ -0,0 +1,92 @@
+package com.shopnow.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style ids: 41 bits of milliseconds since {@link #EPOCH}, a 10-bit
+ * node id and a 12-bit per-millisecond sequence. Ids from one node are strictly
+ * increasing and ids from different nodes never collide, with no coordination
+ * beyond giving each node its own id.
+ *
+ * <p>The last timestamp and sequence are packed into one atomic word and
+ * advanced with compare-and-set. When the clock steps backwards the generator
+ * keeps counting from the last timestamp it issued, and when a millisecond's
+ * sequence is used up it moves on to the next millisecond rather than waiting,
+ * so it never blocks and never repeats an id within a process. Restarting a
+ * node with its clock set back past ids it already issued can repeat them.
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+    public static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    static final long MAX_TIMESTAMP = (1L << (Long.SIZE - 1 - NODE_BITS - SEQUENCE_BITS)) - 1;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public long nextId() {
+        return nextIds(1);
+    }
+
+    /**
+     * The block is taken from a single millisecond's sequence, so the ids are
+     * consecutive numbers; at most {@code 4096} can be reserved at once.
+     */
+    @Override
+    public long nextIds(int count) {
+        if (count < 1 || count > SEQUENCE_MASK + 1) {
+            throw new IllegalArgumentException("Can reserve between 1 and " + (SEQUENCE_MASK + 1) + " ids: " + count);
+        }
+        while (true) {
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH;
+            long first;
+            if (now > lastTimestamp) {
+                first = now << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) + count <= SEQUENCE_MASK) {
+                first = last + 1;
+            } else {
+                first = (lastTimestamp + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(last, first + count - 1)) {
+                long timestamp = first >>> SEQUENCE_BITS;
+                if (timestamp > MAX_TIMESTAMP) {
+                    throw new IllegalStateException("Id timestamp space exhausted");
+                }
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (first & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    @Override
+    public int maxBlockSize() {
+        return (int) SEQUENCE_MASK + 1;
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static long nodeOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
@@ -0,0 +1,62 @@
+package com.shopnow.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+import org.hibernate.service.ServiceRegistry;
+
+import java.lang.reflect.Member;
+import java.util.EnumSet;
+
+/**
+ * Hibernate side of {@link SnowflakeId}. Ids come from the {@link IdGenerator}
+ * bean, reached through Hibernate's bean registry (backed by Spring) on first
+ * use; since no INSERT is needed to learn the id, inserts of these entities can
+ * be batched.
+ */
+public class SnowflakeIdentifierGenerator implements BeforeExecutionGenerator {
+    private final ServiceRegistry serviceRegistry;
+    private volatile IdGenerator idGenerator;
+
+    public SnowflakeIdentifierGenerator(SnowflakeId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.serviceRegistry = context.getServiceRegistry();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        long id = idGenerator().nextId();
+        if (owner instanceof NumberedEntity numbered) {
+            numbered.assignNumber(id);
+        }
+        return id;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    private IdGenerator idGenerator() {
+        IdGenerator generator = idGenerator;
+        if (generator == null) {
+            generator = serviceRegistry.requireService(ManagedBeanRegistry.class)
+                    .getBean(Source.class).getBeanInstance().idGenerator;
+            idGenerator = generator;
+        }
+        return generator;
+    }
+
+    // The registry creates beans with JPA semantics (a new, autowired instance), so
+    // it is asked for this carrier rather than for the IdGenerator itself.
+    public static class Source {
+        private final IdGenerator idGenerator;
+
+        public Source(IdGenerator idGenerator) {
+            this.idGenerator = idGenerator;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.shopnow.inventory;
+
+import com.shopnow.catalog.ProductChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stock admission for products with a {@code stock} value. Each SKU
+ * keeps an atomic count of units still available to reserve; reserving is a
+ * compare-and-set that never lets the count drop below zero, so concurrent
+ * checkouts cannot oversell and no product row is locked per purchase.
+ *
+ * <p>A reservation holds units until it is committed (the sale happened) or
+ * released (checkout failed, or the reservation expired). A checkout records
+ * its sold units in {@code stock_sales} within its own transaction, an
+ * insert that locks no product row, so a sale is durable exactly when its
+ * order is. {@link #reconcile()} folds those rows into {@code products.stock}
+ * in batches and adopts stock changed outside the engine; rows not yet folded
+ * in when the process stops are subtracted again on the next start. Products
+ * whose stock is null are not tracked and always admit.
+ */
+@Component
+public class InventoryEngine {
+    private static final Logger log = LoggerFactory.getLogger(InventoryEngine.class);
+
+    private static final String LOAD_ALL_SQL = "SELECT id, stock FROM products WHERE stock IS NOT NULL";
+    private static final String LOAD_ONE_SQL = "SELECT stock FROM products WHERE id = ?";
+    private static final String PENDING_SALES_SQL =
+            "SELECT product_id, SUM(quantity) AS units FROM stock_sales GROUP BY product_id";
+    private static final String RECORD_SALE_SQL = "INSERT INTO stock_sales (product_id, quantity) VALUES (?, ?)";
+    private static final String SALES_SQL = "SELECT id, product_id, quantity FROM stock_sales";
+    private static final String DELETE_SALE_SQL = "DELETE FROM stock_sales WHERE id = ?";
+    private static final String DECREMENT_SQL = "UPDATE products SET stock = stock - ? WHERE id = ?";
+    private static final String RESTOCK_SQL =
+            "UPDATE products SET stock = COALESCE(stock, 0) + ? WHERE id = ? AND COALESCE(stock, 0) + ? >= 0";
+
+    private static final Sku UNTRACKED = new Sku(0);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long reservationTtlMillis;
+    private final Map<Long, Sku> skus = new ConcurrentHashMap<>();
+    private final Map<Long, Reservation> reservations = new ConcurrentHashMap<>();
+    private final AtomicLong nextReservationId = new AtomicLong();
+
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong lateCommits = new AtomicLong();
+    private final AtomicLong reconciles = new AtomicLong();
+
+    public InventoryEngine(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${shopnow.inventory.reservation-ttl:10m}") Duration reservationTtl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.reservationTtlMillis = reservationTtl.toMillis();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        jdbcTemplate.query(LOAD_ALL_SQL, rs -> {
+            skus.put(rs.getLong("id"), new Sku(rs.getInt("stock")));
+        });
+        jdbcTemplate.query(PENDING_SALES_SQL, rs -> {
+            Sku sku = skus.get(rs.getLong("product_id"));
+            if (sku != null) {
+                sku.available.addAndGet(-rs.getInt("units"));
+            }
+        });
+        log.info("Inventory loaded for {} tracked products", skus.size());
+    }
+
+    /**
+     * Takes every line or none. Throws when a tracked product does not have
+     * enough units left; lines for untracked products always succeed.
+     */
+    public Reservation reserve(Map<Long, Integer> lines) {
+        Map<Long, Integer> taken = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            long productId = line.getKey();
+            int quantity = line.getValue();
+            if (quantity <= 0) {
+                continue;
+            }
+            Sku sku = sku(productId);
+            if (sku == UNTRACKED) {
+                continue;
+            }
+            if (!sku.tryTake(quantity)) {
+                taken.forEach((id, units) -> skus.getOrDefault(id, UNTRACKED).giveBack(units));
+                rejected.incrementAndGet();
+                throw new RuntimeException("Insufficient stock for product " + productId);
+            }
+            taken.put(productId, quantity);
+        }
+        Reservation reservation = new Reservation(nextReservationId.incrementAndGet(), taken,
+                System.currentTimeMillis() + reservationTtlMillis);
+        if (!taken.isEmpty()) {
+            reservations.put(reservation.getId(), reservation);
+        }
+        reserved.incrementAndGet();
+        return reservation;
+    }
+
+    /**
+     * Reserves for the current transaction and records the sale in it: the
+     * reservation is committed if the transaction commits and released if it
+     * rolls back.
+     */
+    public Reservation reserveForTransaction(Map<Long, Integer> lines) {
+        Reservation reservation = reserve(lines);
+        if (!reservation.getLines().isEmpty()) {
+            List<Object[]> sales = new ArrayList<>(reservation.getLines().size());
+            reservation.getLines().forEach((productId, units) -> sales.add(new Object[]{productId, units}));
+            try {
+                jdbcTemplate.batchUpdate(RECORD_SALE_SQL, sales);
+            } catch (RuntimeException e) {
+                release(reservation.getId());
+                throw e;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        commit(reservation);
+                    } else {
+                        release(reservation.getId());
+                    }
+                }
+            });
+        }
+        return reservation;
+    }
+
+    public void commit(Reservation reservation) {
+        if (reservations.remove(reservation.getId()) == null) {
+            // Expired before its sale committed: the units went back to the pool, so take them again.
+            log.warn("Reservation {} committed after it expired", reservation.getId());
+            lateCommits.incrementAndGet();
+            reservation.getLines().forEach((productId, units) -> skus.getOrDefault(productId, UNTRACKED).take(units));
+        }
+        committed.incrementAndGet();
+    }
+
+    public boolean release(long reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation == null) {
+            return false;
+        }
+        reservation.getLines().forEach((productId, units) -> skus.getOrDefault(productId, UNTRACKED).giveBack(units));
+        released.incrementAndGet();
+        return true;
+    }
+
+    /** Units that can still be reserved, or null when the product's stock is not tracked. */
+    public Integer available(long productId) {
+        Sku sku = sku(productId);
+        return sku == UNTRACKED ? null : sku.available.get();
+    }
+
+    /**
+     * Adds (or with a negative delta removes) units, starting to track the product
+     * if it was not. Only units that are neither reserved nor sold can be removed.
+     */
+    public synchronized int restock(long productId, int delta) {
+        Sku sku = sku(productId);
+        if (delta < 0 && sku != UNTRACKED && !sku.tryTake(-delta)) {
+            throw new RuntimeException("Cannot remove " + -delta + " units; only " + sku.available.get()
+                    + " are unreserved");
+        }
+        int updated;
+        try {
+            updated = jdbcTemplate.update(RESTOCK_SQL, delta, productId, delta);
+        } catch (RuntimeException e) {
+            if (delta < 0) {
+                sku.giveBack(-delta);
+            }
+            throw e;
+        }
+        if (updated == 0) {
+            if (delta < 0) {
+                sku.giveBack(-delta);
+            }
+            throw new RuntimeException("Product not found or stock would become negative");
+        }
+        if (sku == UNTRACKED) {
+            sku = new Sku(jdbcTemplate.queryForObject(LOAD_ONE_SQL, Integer.class, productId));
+            skus.put(productId, sku);
+        } else {
+            sku.persisted += delta;
+            if (delta > 0) {
+                sku.available.addAndGet(delta);
+            }
+        }
+        return sku.available.get();
+    }
+
+    @Scheduled(fixedDelayString = "${shopnow.inventory.sweep-interval:PT1S}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        for (Reservation reservation : reservations.values()) {
+            if (reservation.getExpiresAt() <= now && release(reservation.getId())) {
+                expired.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Folds the recorded sales into {@code products.stock} in one transaction and
+     * adopts any change made to the column outside the engine since the last run.
+     */
+    @Scheduled(fixedDelayString = "${shopnow.inventory.reconcile-interval:PT5S}")
+    public synchronized void reconcile() {
+        Map<Long, Integer> applied;
+        try {
+            applied = transactionTemplate.execute(status -> applySales());
+        } catch (RuntimeException e) {
+            log.error("Could not fold recorded sales into stock; retrying on the next run", e);
+            return;
+        }
+        applied.forEach((productId, units) -> {
+            Sku sku = skus.get(productId);
+            if (sku != null && sku != UNTRACKED) {
+                sku.persisted -= units;
+            }
+        });
+
+        Map<Long, Integer> stored = new HashMap<>();
+        jdbcTemplate.query(LOAD_ALL_SQL, rs -> {
+            stored.put(rs.getLong("id"), rs.getInt("stock"));
+        });
+        stored.forEach((productId, stock) -> {
+            Sku sku = skus.get(productId);
+            if (sku == null || sku == UNTRACKED) {
+                skus.put(productId, new Sku(stock));
+            } else if (sku.persisted != stock) {
+                sku.available.addAndGet(stock - sku.persisted);
+                sku.persisted = stock;
+            }
+        });
+        skus.entrySet().removeIf(entry -> entry.getValue() != UNTRACKED && !stored.containsKey(entry.getKey()));
+        reconciles.incrementAndGet();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconcile();
+    }
+
+    // Deletes exactly the rows it applied, so a sale committed while this runs is left for the next run.
+    private Map<Long, Integer> applySales() {
+        Map<Long, Integer> units = new LinkedHashMap<>();
+        List<Object[]> saleIds = new ArrayList<>();
+        jdbcTemplate.query(SALES_SQL, rs -> {
+            units.merge(rs.getLong("product_id"), rs.getInt("quantity"), Integer::sum);
+            saleIds.add(new Object[]{rs.getLong("id")});
+        });
+        if (!saleIds.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(units.size());
+            units.forEach((productId, sold) -> rows.add(new Object[]{sold, productId}));
+            jdbcTemplate.batchUpdate(DECREMENT_SQL, rows);
+            jdbcTemplate.batchUpdate(DELETE_SALE_SQL, saleIds);
+        }
+        return units;
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getProduct() == null) {
+            skus.remove(event.getProductId());
+        } else {
+            skus.remove(event.getProductId(), UNTRACKED);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long available = 0;
+        int tracked = 0;
+        for (Sku sku : skus.values()) {
+            if (sku != UNTRACKED) {
+                tracked++;
+                available += sku.available.get();
+            }
+        }
+        Long unpersisted = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM stock_sales",
+                Long.class);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("trackedProducts", tracked);
+        result.put("availableUnits", available);
+        result.put("activeReservations", reservations.size());
+        result.put("unpersistedUnits", unpersisted);
+        result.put("reserved", reserved.get());
+        result.put("rejected", rejected.get());
+        result.put("committed", committed.get());
+        result.put("released", released.get());
+        result.put("expired", expired.get());
+        result.put("lateCommits", lateCommits.get());
+        result.put("reconciles", reconciles.get());
+        return result;
+    }
+
+    private Sku sku(long productId) {
+        Sku sku = skus.get(productId);
+        if (sku != null) {
+            return sku;
+        }
+        List<Integer> stock = jdbcTemplate.queryForList(LOAD_ONE_SQL, Integer.class, productId);
+        Sku loaded = stock.isEmpty() || stock.get(0) == null ? UNTRACKED : new Sku(stock.get(0));
+        Sku existing = skus.putIfAbsent(productId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static final class Sku {
+        final AtomicInteger available;
+        // Stock as last written or read by the engine; only touched under the engine's monitor.
+        int persisted;
+
+        Sku(int stock) {
+            this.available = new AtomicInteger(stock);
+            this.persisted = stock;
+        }
+
+        boolean tryTake(int units) {
+            while (true) {
+                int current = available.get();
+                if (current < units) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - units)) {
+                    return true;
+                }
+            }
+        }
+
+        void take(int units) {
+            if (this != UNTRACKED) {
+                available.addAndGet(-units);
+            }
+        }
+
+        void giveBack(int units) {
+            if (this != UNTRACKED) {
+                available.addAndGet(units);
+            }
+        }
+    }
+}
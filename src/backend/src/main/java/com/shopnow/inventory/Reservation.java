@@ -0,0 +1,14 @@
+package com.shopnow.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class Reservation {
+    private final long id;
+    private final Map<Long, Integer> lines;
+    private final long expiresAt;
+}
@@ -0,0 +1,48 @@
+package com.shopnow.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "import_jobs")
+public class ImportJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 1000)
+    private String source;
+
+    @Column(nullable = false)
+    private String format;
+
+    @Column(nullable = false)
+    private String mode;
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Column(name = "processed_rows", nullable = false)
+    private Long processedRows;
+
+    @Column(name = "imported_rows", nullable = false)
+    private Long importedRows;
+
+    @Column(name = "rejected_rows", nullable = false)
+    private Long rejectedRows;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -1,5 +1,11 @@
 package com.shopnow.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.shopnow.id.NumberedEntity;
+import com.shopnow.id.OrderNumbers;
+import com.shopnow.id.SnowflakeId;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -7,19 +13,30 @@ import java.util.List;
 
 @Data
 @Entity
-@Table(name = "orders")
-public class Order {
+@Table(name = "orders",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "idempotency_key"}),
+       indexes = {
+           @Index(name = "idx_orders_user_id", columnList = "user_id, id"),
+           @Index(name = "idx_orders_created_at", columnList = "created_at")
+       })
+public class Order implements NumberedEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
 
+    @Column(name = "order_number", unique = true, updatable = false)
+    private String orderNumber;
+
+    // Often a bare reference from UserService.reference; only its id is serialized, as userId.
+    @JsonIgnore
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @OneToMany(cascade = CascadeType.ALL)
-    @JoinColumn(name = "order_id")
-    private List<CartItem> items;
+    // Written with set-based SQL at checkout, never through this collection.
+    @OneToMany(mappedBy = "order")
+    private List<OrderItem> items;
 
     private double total;
 
@@ -33,4 +50,18 @@ public class Order {
 
     @Column(name = "created_at")
     private LocalDateTime createdAt;
+
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    public Long getUserId() {
+        return user == null ? null : user.getId();
+    }
+
+    @Override
+    public void assignNumber(long id) {
+        if (orderNumber == null) {
+            orderNumber = OrderNumbers.format(id);
+        }
+    }
 }
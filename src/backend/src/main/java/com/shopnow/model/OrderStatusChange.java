@@ -0,0 +1,30 @@
+package com.shopnow.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "order_status_changes", indexes = {
+        @Index(name = "idx_order_status_changes_user", columnList = "user_id, id"),
+        @Index(name = "idx_order_status_changes_created_at", columnList = "created_at")
+})
+public class OrderStatusChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -2,10 +2,16 @@ package com.shopnow.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_price", columnList = "price, id"),
+        @Index(name = "idx_products_rating", columnList = "rating DESC, id")
+})
 public class Product {
 
     @Id
@@ -26,4 +32,17 @@ public class Product {
 
     @Column(length = 1000)
     private String description;
+
+    // Null means stock is not tracked. Changed only through InventoryEngine, never by entity updates.
+    @Column(updatable = false)
+    private Integer stock;
+
+    // Set on every insert and update; the catalog snapshot compares it to tell whether it is stale.
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Key of the product in the import feed it came from. Written only by feed upserts, never by entity saves.
+    @Column(name = "feed_id", unique = true, insertable = false, updatable = false)
+    private Long feedId;
 }
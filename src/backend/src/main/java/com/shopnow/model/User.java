@@ -1,5 +1,6 @@
 package com.shopnow.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -15,6 +16,7 @@ public class User {
     @Column(unique = true, nullable = false)
     private String email;
 
+    @JsonIgnore
     @Column(nullable = false)
     private String password;
 
@@ -24,6 +26,9 @@ public class User {
     @Column(name = "last_name")
     private String lastName;
 
+    @Column(nullable = false, length = 32)
+    private String role = "USER";
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 }
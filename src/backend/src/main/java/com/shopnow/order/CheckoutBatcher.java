@@ -0,0 +1,549 @@
+package com.shopnow.order;
+
+import com.shopnow.cart.CartStore;
+import com.shopnow.id.IdGenerator;
+import com.shopnow.inventory.InventoryEngine;
+import com.shopnow.model.Order;
+import com.shopnow.model.OrderEvent;
+import com.shopnow.model.OrderItem;
+import com.shopnow.model.Product;
+import com.shopnow.model.User;
+import com.shopnow.repository.OrderRepository;
+import com.shopnow.service.ProductService;
+import com.shopnow.service.UserService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group commit for checkout. Callers park on a future while a single committer
+ * thread collects concurrent checkouts for up to {@code max-wait} or
+ * {@code max-batch-size} requests, then writes the whole group in one
+ * transaction with batched inserts into {@code orders}, {@code order_items}
+ * and {@code order_events} and a batched cart delete. Requests that cannot be
+ * placed (empty cart, unknown user, insufficient stock) fail on their own
+ * without affecting the group; if the group transaction itself fails, every
+ * request is retried in a transaction of its own so each caller gets its own
+ * result or error. Callers wait at most {@code result-timeout}.
+ */
+@Component
+public class CheckoutBatcher {
+    private static final Logger log = LoggerFactory.getLogger(CheckoutBatcher.class);
+
+    private static final String INSERT_ORDER_SQL =
+            "INSERT INTO orders (id, order_number, user_id, total, shipping_address, payment_method, status, "
+                    + "created_at, idempotency_key) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ORDER_ITEM_SQL =
+            "INSERT INTO order_items (id, order_id, product_id, quantity, price) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO order_events (order_id, type, status, attempts, available_at, created_at) "
+                    + "VALUES (?, 'ORDER_PLACED', ?, 0, ?, ?)";
+    private static final String DELETE_CART_SQL = "DELETE FROM cart_items WHERE user_id = ? AND id <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderRepository orderRepository;
+    private final UserService userService;
+    private final ProductService productService;
+    private final CartStore cartStore;
+    private final InventoryEngine inventoryEngine;
+    private final IdGenerator idGenerator;
+    private final OrderStatusStream orderStatusStream;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long resultTimeoutNanos;
+    private final BlockingQueue<PendingCheckout> queue;
+    private final Thread committer;
+    private volatile boolean running;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong orders = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private volatile int largestBatch;
+
+    public CheckoutBatcher(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            OrderRepository orderRepository,
+            UserService userService,
+            ProductService productService,
+            CartStore cartStore,
+            InventoryEngine inventoryEngine,
+            IdGenerator idGenerator,
+            OrderStatusStream orderStatusStream,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${shopnow.checkout.group-commit.enabled:false}") boolean enabled,
+            @Value("${shopnow.checkout.group-commit.max-batch-size:64}") int maxBatchSize,
+            @Value("${shopnow.checkout.group-commit.max-wait:5ms}") Duration maxWait,
+            @Value("${shopnow.checkout.group-commit.queue-capacity:10000}") int queueCapacity,
+            @Value("${shopnow.checkout.group-commit.result-timeout:30s}") Duration resultTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.orderRepository = orderRepository;
+        this.userService = userService;
+        this.productService = productService;
+        this.cartStore = cartStore;
+        this.inventoryEngine = inventoryEngine;
+        this.idGenerator = idGenerator;
+        this.orderStatusStream = orderStatusStream;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.resultTimeoutNanos = resultTimeout.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.committer = new Thread(this::run, "checkout-committer");
+        this.committer.setDaemon(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            running = true;
+            committer.start();
+        }
+    }
+
+    /**
+     * Stops taking checkouts, lets the committer finish the group it is writing
+     * (it notices within its one-second poll) and fails whatever is still queued.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            committer.join(TimeUnit.NANOSECONDS.toMillis(resultTimeoutNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingCheckout> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        for (PendingCheckout pending : abandoned) {
+            pending.result.completeExceptionally(new RuntimeException("Checkout is shutting down"));
+        }
+    }
+
+    /**
+     * Queues a checkout for the next group commit and waits up to
+     * {@code result-timeout} for its outcome. A checkout still queued when the
+     * wait ends is withdrawn; one the committer has already taken may yet be
+     * placed, which a retry with the same idempotency key will find.
+     */
+    public Order submit(Long userId, String shippingAddress, String paymentMethod, String idempotencyKey) {
+        if (!running) {
+            throw new RuntimeException("Checkout is not accepting orders");
+        }
+        PendingCheckout pending = new PendingCheckout(userId, shippingAddress, paymentMethod, idempotencyKey);
+        long deadline = System.nanoTime() + resultTimeoutNanos;
+        try {
+            if (!queue.offer(pending, resultTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new RuntimeException("Checkout queue is full");
+            }
+            // shutdown() may have drained the queue between the running check and the offer.
+            if (!running && queue.remove(pending)) {
+                throw new RuntimeException("Checkout is shutting down");
+            }
+            return pending.result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            queue.remove(pending);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for checkout", e);
+        } catch (TimeoutException e) {
+            if (queue.remove(pending)) {
+                throw new RuntimeException("Checkout timed out before it was started");
+            }
+            throw new RuntimeException("Checkout did not complete in time; the order may still be placed");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long batchCount = batches.get();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("maxBatchSize", maxBatchSize);
+        result.put("maxWaitMicros", TimeUnit.NANOSECONDS.toMicros(maxWaitNanos));
+        result.put("queued", queue.size());
+        result.put("batches", batchCount);
+        result.put("orders", orders.get());
+        result.put("rejected", rejected.get());
+        result.put("averageBatchSize", batchCount == 0 ? 0.0 : (double) (orders.get() + rejected.get()) / batchCount);
+        result.put("largestBatch", largestBatch);
+        result.put("fallbacks", fallbacks.get());
+        return result;
+    }
+
+    private void run() {
+        while (running) {
+            List<PendingCheckout> batch;
+            try {
+                batch = collect();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                commit(batch);
+            } catch (RuntimeException e) {
+                log.error("Checkout group commit failed unexpectedly", e);
+                for (PendingCheckout pending : batch) {
+                    pending.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    // Blocks for the first request, then keeps the window open until it is full or max-wait has passed.
+    private List<PendingCheckout> collect() throws InterruptedException {
+        PendingCheckout first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        List<PendingCheckout> batch = new ArrayList<>(maxBatchSize);
+        batch.add(first);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                break;
+            }
+            PendingCheckout next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void commit(List<PendingCheckout> batch) {
+        batches.incrementAndGet();
+        largestBatch = Math.max(largestBatch, batch.size());
+        if (cartStore.isEnabled()) {
+            for (PendingCheckout pending : batch) {
+                cartStore.flush(pending.userId);
+            }
+        }
+        Map<PendingCheckout, Object> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(status -> write(batch));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                rejected.incrementAndGet();
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            log.warn("Checkout group of {} failed; retrying each order on its own", batch.size(), e);
+            fallbacks.incrementAndGet();
+            for (PendingCheckout pending : batch) {
+                commit(List.of(pending));
+            }
+            return;
+        }
+        complete(outcomes);
+    }
+
+    private void complete(Map<PendingCheckout, Object> outcomes) {
+        List<Long> existingIds = new ArrayList<>();
+        for (Object outcome : outcomes.values()) {
+            if (outcome instanceof Long orderId) {
+                existingIds.add(orderId);
+            }
+        }
+        Map<Long, Order> existing = new HashMap<>();
+        if (!existingIds.isEmpty()) {
+            // Loaded with their lines, since callers render them after this thread's session has closed.
+            for (Order order : orderRepository.findAllDetailsById(existingIds)) {
+                existing.put(order.getId(), order);
+            }
+        }
+        outcomes.forEach((pending, outcome) -> {
+            if (outcome instanceof Order order) {
+                orders.incrementAndGet();
+                pending.result.complete(order);
+            } else if (outcome instanceof Long orderId) {
+                pending.result.complete(existing.get(orderId));
+            } else {
+                rejected.incrementAndGet();
+                pending.result.completeExceptionally((RuntimeException) outcome);
+            }
+        });
+    }
+
+    // Maps each request to its new Order, the id of an order already placed under its key, or its error.
+    private Map<PendingCheckout, Object> write(List<PendingCheckout> batch) {
+        Map<PendingCheckout, Object> outcomes = new IdentityHashMap<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (PendingCheckout pending : batch) {
+            userIds.add(pending.userId);
+        }
+        Map<Long, Long> lastLineIds = new HashMap<>();
+        Map<Long, Map<Long, Integer>> carts = loadCarts(userIds, lastLineIds);
+        // Looked up after the cart locks are held, so an order placed under the same key
+        // by a checkout that held them before us has committed and is visible.
+        Map<String, Long> placedByKey = findPlacedByKey(batch);
+        Set<Long> productIds = new LinkedHashSet<>();
+        carts.values().forEach(lines -> productIds.addAll(lines.keySet()));
+        Map<Long, Product> products = productService.findAllById(productIds);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Order> placed = new ArrayList<>();
+        Map<String, PendingCheckout> firstByKey = new HashMap<>();
+        List<PendingCheckout> duplicates = new ArrayList<>();
+        for (PendingCheckout pending : batch) {
+            String key = pending.keyScope();
+            if (key != null && placedByKey.containsKey(key)) {
+                outcomes.put(pending, placedByKey.get(key));
+                continue;
+            }
+            if (key != null && firstByKey.putIfAbsent(key, pending) != null) {
+                duplicates.add(pending);
+                continue;
+            }
+            // A second checkout by the same user in this group finds the cart already taken.
+            Map<Long, Integer> lines = carts.remove(pending.userId);
+            if (lines == null || lines.isEmpty()) {
+                outcomes.put(pending, new RuntimeException("Cart is empty"));
+                continue;
+            }
+            try {
+                inventoryEngine.reserveForTransaction(lines);
+            } catch (RuntimeException e) {
+                outcomes.put(pending, e);
+                continue;
+            }
+            Order order = newOrder(pending, userService.reference(pending.userId), lines, products, now);
+            placed.add(order);
+            outcomes.put(pending, order);
+        }
+
+        if (!placed.isEmpty()) {
+            insertOrders(placed);
+            insertOrderItems(placed);
+            deleteCarts(placed, lastLineIds);
+            orderStatusStream.recordChanges(placed.stream().map(Order::getId).toList());
+            List<Long> eventIds = insertEvents(placed);
+            for (int i = 0; i < placed.size(); i++) {
+                eventPublisher.publishEvent(new OrderPlacedEvent(placed.get(i), eventIds.get(i)));
+            }
+        }
+        for (PendingCheckout duplicate : duplicates) {
+            outcomes.put(duplicate, outcomes.get(firstByKey.get(duplicate.keyScope())));
+        }
+        return outcomes;
+    }
+
+    private Map<String, Long> findPlacedByKey(List<PendingCheckout> batch) {
+        List<Object> args = new ArrayList<>();
+        for (PendingCheckout pending : batch) {
+            if (pending.idempotencyKey != null) {
+                args.add(pending.idempotencyKey);
+            }
+        }
+        Map<String, Long> placed = new HashMap<>();
+        if (args.isEmpty()) {
+            return placed;
+        }
+        jdbcTemplate.query("SELECT id, user_id, idempotency_key FROM orders WHERE idempotency_key IN ("
+                        + placeholders(args.size()) + ")",
+                rs -> {
+                    placed.put(rs.getLong("user_id") + ":" + rs.getString("idempotency_key"), rs.getLong("id"));
+                },
+                args.toArray());
+        return placed;
+    }
+
+    // Locks the cart rows until the group commits; lines added meanwhile get higher ids and survive the delete.
+    private Map<Long, Map<Long, Integer>> loadCarts(Collection<Long> userIds, Map<Long, Long> lastLineIds) {
+        Map<Long, Map<Long, Integer>> carts = new HashMap<>();
+        jdbcTemplate.query("SELECT id, user_id, product_id, quantity FROM cart_items WHERE user_id IN ("
+                        + placeholders(userIds.size()) + ") ORDER BY id FOR UPDATE",
+                rs -> {
+                    carts.computeIfAbsent(rs.getLong("user_id"), id -> new LinkedHashMap<>())
+                            .put(rs.getLong("product_id"), rs.getInt("quantity"));
+                    lastLineIds.put(rs.getLong("user_id"), rs.getLong("id"));
+                },
+                userIds.toArray());
+        return carts;
+    }
+
+    private static Order newOrder(PendingCheckout pending, User user, Map<Long, Integer> lines,
+                                  Map<Long, Product> products, LocalDateTime now) {
+        Order order = new Order();
+        List<OrderItem> items = new ArrayList<>(lines.size());
+        double total = 0;
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            Product product = products.get(line.getKey());
+            items.add(new OrderItem(null, order, product, line.getValue(), product.getPrice()));
+            total += product.getPrice() * line.getValue();
+        }
+        order.setUser(user);
+        order.setItems(items);
+        order.setShippingAddress(pending.shippingAddress);
+        order.setPaymentMethod(pending.paymentMethod);
+        order.setStatus("PENDING");
+        order.setCreatedAt(now);
+        order.setTotal(total);
+        order.setIdempotencyKey(pending.idempotencyKey);
+        return order;
+    }
+
+    private void insertOrders(List<Order> placed) {
+        List<Object[]> rows = new ArrayList<>(placed.size());
+        for (Order order : placed) {
+            long id = idGenerator.nextId();
+            order.setId(id);
+            order.assignNumber(id);
+            rows.add(new Object[]{id, order.getOrderNumber(), order.getUser().getId(), order.getTotal(),
+                    order.getShippingAddress(), order.getPaymentMethod(), order.getStatus(),
+                    Timestamp.valueOf(order.getCreatedAt()), order.getIdempotencyKey()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ORDER_SQL, rows);
+    }
+
+    private void insertOrderItems(List<Order> placed) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Order order : placed) {
+            long id = 0;
+            int reserved = 0;
+            for (int i = 0; i < order.getItems().size(); i++) {
+                if (reserved == 0) {
+                    reserved = Math.min(idGenerator.maxBlockSize(), order.getItems().size() - i);
+                    id = idGenerator.nextIds(reserved);
+                }
+                reserved--;
+                OrderItem item = order.getItems().get(i);
+                item.setId(id++);
+                rows.add(new Object[]{item.getId(), order.getId(), item.getProduct().getId(),
+                        item.getQuantity(), item.getPrice()});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_ORDER_ITEM_SQL, rows);
+    }
+
+    private void deleteCarts(List<Order> placed, Map<Long, Long> lastLineIds) {
+        List<Object[]> rows = new ArrayList<>(placed.size());
+        for (Order order : placed) {
+            rows.add(new Object[]{order.getUser().getId(), lastLineIds.get(order.getUser().getId())});
+        }
+        jdbcTemplate.batchUpdate(DELETE_CART_SQL, rows);
+        if (cartStore.isEnabled()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    for (Order order : placed) {
+                        Map<Long, Integer> lines = new HashMap<>();
+                        order.getItems().forEach(item -> lines.put(item.getProduct().getId(), item.getQuantity()));
+                        cartStore.removeCheckedOut(order.getUser().getId(), lines);
+                    }
+                }
+            });
+        }
+    }
+
+    private List<Long> insertEvents(List<Order> placed) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_EVENT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Order order = placed.get(i);
+                        Timestamp createdAt = Timestamp.valueOf(order.getCreatedAt());
+                        ps.setLong(1, order.getId());
+                        ps.setString(2, OrderEvent.PENDING);
+                        ps.setTimestamp(3, createdAt);
+                        ps.setTimestamp(4, createdAt);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return placed.size();
+                    }
+                }, keys);
+        return generatedIds(keys, placed.size());
+    }
+
+    private static List<Long> generatedIds(KeyHolder keys, int expected) {
+        List<Map<String, Object>> rows = keys.getKeyList();
+        if (rows.size() != expected) {
+            throw new IllegalStateException("Expected " + expected + " generated keys but got " + rows.size());
+        }
+        List<Long> ids = new ArrayList<>(expected);
+        for (Map<String, Object> row : rows) {
+            ids.add(((Number) row.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static final class PendingCheckout {
+        final Long userId;
+        final String shippingAddress;
+        final String paymentMethod;
+        final String idempotencyKey;
+        final CompletableFuture<Order> result = new CompletableFuture<>();
+
+        PendingCheckout(Long userId, String shippingAddress, String paymentMethod, String idempotencyKey) {
+            this.userId = userId;
+            this.shippingAddress = shippingAddress;
+            this.paymentMethod = paymentMethod;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        String keyScope() {
+            return idempotencyKey == null ? null : userId + ":" + idempotencyKey;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.shopnow.order;
+
+import com.shopnow.model.OrderEvent;
+import com.shopnow.repository.OrderEventRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs order post-processing off the checkout path. Checkout writes an
+ * {@code order_events} row in its own transaction; after commit the row id is
+ * offered to a bounded in-process queue drained by a fixed worker pool. When
+ * the queue is full the id is simply not enqueued and the outbox poller picks
+ * it up later, so checkout never blocks on post-processing and nothing is lost.
+ * Delivery is at-least-once: an event stays PENDING until its handler commits.
+ */
+@Component
+public class FulfilmentQueue {
+    private static final Logger log = LoggerFactory.getLogger(FulfilmentQueue.class);
+
+    private static final String CONFIRM_SQL =
+            "UPDATE orders SET status = 'CONFIRMED' WHERE id = ? AND status = 'PENDING'";
+
+    private final OrderEventRepository orderEventRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderStatusStream orderStatusStream;
+    private final BlockingQueue<Long> queue;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private volatile boolean running;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    public FulfilmentQueue(
+            OrderEventRepository orderEventRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            OrderStatusStream orderStatusStream,
+            @Value("${shopnow.fulfilment.queue-capacity:1000}") int queueCapacity,
+            @Value("${shopnow.fulfilment.workers:2}") int workerCount,
+            @Value("${shopnow.fulfilment.max-attempts:5}") int maxAttempts,
+            @Value("${shopnow.fulfilment.retry-backoff:PT1S}") Duration retryBackoff) {
+        this.orderEventRepository = orderEventRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.orderStatusStream = orderStatusStream;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workerCount = workerCount;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "fulfilment");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::drain);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.shutdownNow();
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        enqueue(event.getOutboxEventId());
+    }
+
+    @Scheduled(fixedDelayString = "${shopnow.fulfilment.poll-interval:PT5S}")
+    public void pollOutbox() {
+        int room = queue.remainingCapacity();
+        if (!running || room == 0) {
+            return;
+        }
+        for (Long eventId : orderEventRepository.findDueIds(LocalDateTime.now(), PageRequest.of(0, room))) {
+            if (!enqueue(eventId)) {
+                break;
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queued", queue.size());
+        result.put("capacity", queue.size() + queue.remainingCapacity());
+        result.put("inFlight", inFlight.size());
+        result.put("pendingInOutbox", orderEventRepository.countByStatus(OrderEvent.PENDING));
+        result.put("failedInOutbox", orderEventRepository.countByStatus(OrderEvent.FAILED));
+        result.put("processed", processed.get());
+        result.put("retried", retried.get());
+        result.put("failed", failed.get());
+        result.put("deferredToPoller", deferred.get());
+        return result;
+    }
+
+    private boolean enqueue(Long eventId) {
+        if (!inFlight.add(eventId)) {
+            return true;
+        }
+        if (!queue.offer(eventId)) {
+            inFlight.remove(eventId);
+            deferred.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void drain() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            Long eventId;
+            try {
+                eventId = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (eventId == null) {
+                continue;
+            }
+            try {
+                process(eventId);
+            } catch (RuntimeException e) {
+                try {
+                    recordFailure(eventId, e);
+                } catch (RuntimeException recordError) {
+                    log.error("Could not record failure of order event {}; the poller will retry it",
+                            eventId, recordError);
+                }
+            } finally {
+                inFlight.remove(eventId);
+            }
+        }
+    }
+
+    private void process(Long eventId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            OrderEvent event = orderEventRepository.findById(eventId).orElse(null);
+            if (event == null || !OrderEvent.PENDING.equals(event.getStatus())) {
+                return;
+            }
+            handle(event);
+            event.setStatus(OrderEvent.PROCESSED);
+            event.setProcessedAt(LocalDateTime.now());
+            orderEventRepository.save(event);
+        });
+        processed.incrementAndGet();
+    }
+
+    // Handlers must tolerate being run more than once for the same event.
+    private void handle(OrderEvent event) {
+        switch (event.getType()) {
+            case "ORDER_PLACED" -> {
+                if (jdbcTemplate.update(CONFIRM_SQL, event.getOrderId()) > 0) {
+                    orderStatusStream.recordChange(event.getOrderId());
+                    log.info("Order {} confirmed; sending confirmation notification", event.getOrderId());
+                }
+            }
+            default -> log.warn("Ignoring order event {} of unknown type {}", event.getId(), event.getType());
+        }
+    }
+
+    private void recordFailure(Long eventId, RuntimeException error) {
+        log.warn("Order event {} failed", eventId, error);
+        transactionTemplate.executeWithoutResult(status ->
+                orderEventRepository.findById(eventId).ifPresent(event -> {
+                    int attempts = event.getAttempts() + 1;
+                    event.setAttempts(attempts);
+                    event.setLastError(truncate(error.getMessage()));
+                    if (attempts >= maxAttempts) {
+                        event.setStatus(OrderEvent.FAILED);
+                        failed.incrementAndGet();
+                    } else {
+                        event.setAvailableAt(LocalDateTime.now().plus(retryBackoff.multipliedBy(1L << attempts)));
+                        retried.incrementAndGet();
+                    }
+                    orderEventRepository.save(event);
+                }));
+    }
+
+    private static String truncate(String message) {
+        return message == null || message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+}
@@ -0,0 +1,12 @@
+package com.shopnow.order;
+
+import com.shopnow.model.Order;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    private final Order order;
+    private final Long outboxEventId;
+}
@@ -0,0 +1,478 @@
+package com.shopnow.order;
+
+import com.shopnow.dto.OrderStatusChangeDto;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes order status changes to clients over server-sent events. Every status
+ * a checkout or the fulfilment queue writes is also appended to
+ * {@code order_status_changes} in the same transaction. A single dispatcher
+ * thread tails that table by id, woken right after commits made by this
+ * instance and otherwise polling, and fans each change out to the subscribers
+ * of the order's user. One small query per wake-up replaces per-client
+ * polling of the order tables.
+ *
+ * <p>Each connection has a bounded buffer drained by a sender pool, so a slow
+ * client never blocks the dispatcher; a client whose buffer fills is
+ * disconnected and can resume with {@code Last-Event-ID}. Writes are blocking,
+ * so a send still running after {@code send-timeout} marks its connection as
+ * stalled: the connection is dropped and the pool gets a thread to replace the
+ * one stuck in the write until the container gives up on it. Identity ids can
+ * commit out of order, so the dispatcher holds back changes behind a missing
+ * id for up to {@code gap-grace} before giving up on it.
+ */
+@Component
+public class OrderStatusStream {
+    private static final Logger log = LoggerFactory.getLogger(OrderStatusStream.class);
+
+    private static final String RECORD_SQL =
+            "INSERT INTO order_status_changes (order_id, user_id, status, created_at) "
+                    + "SELECT id, user_id, status, ? FROM orders WHERE id = ?";
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM order_status_changes";
+    private static final String TAIL_SQL =
+            "SELECT id, order_id, user_id, status, created_at FROM order_status_changes "
+                    + "WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String CATCH_UP_SQL =
+            "SELECT id, order_id, user_id, status, created_at FROM order_status_changes "
+                    + "WHERE user_id = ? AND id > ? AND id <= ? ORDER BY id LIMIT ?";
+    private static final String PURGE_SQL = "DELETE FROM order_status_changes WHERE created_at < ? AND id <= ?";
+    private static final Object HEARTBEAT = new Object();
+    private static final Object RECONNECT = new Object();
+
+    private static final RowMapper<Change> CHANGE_MAPPER = (rs, rowNum) -> new Change(rs.getLong("user_id"),
+            new OrderStatusChangeDto(rs.getLong("id"), rs.getLong("order_id"), rs.getString("status"),
+                    rs.getTimestamp("created_at").toLocalDateTime()));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int bufferSize;
+    private final int maxConnections;
+    private final int batchSize;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final int senderThreads;
+    private final int maxStalledSenders;
+    private final Duration pollInterval;
+    private final long gapGraceMillis;
+    private final Duration retention;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Queue<Subscriber> joining = new ConcurrentLinkedQueue<>();
+    private final Set<Subscriber> sending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Semaphore wakeups = new Semaphore(0);
+    private final Thread dispatcher;
+    private final ThreadPoolExecutor senders;
+    // Sender threads currently stuck in a write to a dropped connection; guarded by senders.
+    private int stalledSenders;
+    private volatile boolean running;
+    // Last change handed to subscribers; everything at or below it has been dispatched.
+    private volatile long cursor;
+    private long gapSince;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong droppedSlow = new AtomicLong();
+    private final AtomicLong droppedStalled = new AtomicLong();
+    private final AtomicLong skippedGaps = new AtomicLong();
+    private final AtomicLong polls = new AtomicLong();
+
+    public OrderStatusStream(
+            JdbcTemplate jdbcTemplate,
+            @Value("${shopnow.order-stream.buffer-size:256}") int bufferSize,
+            @Value("${shopnow.order-stream.max-connections:10000}") int maxConnections,
+            @Value("${shopnow.order-stream.batch-size:500}") int batchSize,
+            @Value("${shopnow.order-stream.timeout:30m}") Duration timeout,
+            @Value("${shopnow.order-stream.poll-interval:PT1S}") Duration pollInterval,
+            @Value("${shopnow.order-stream.gap-grace:500ms}") Duration gapGrace,
+            @Value("${shopnow.order-stream.retention:24h}") Duration retention,
+            @Value("${shopnow.order-stream.sender-threads:4}") int senderThreads,
+            @Value("${shopnow.order-stream.send-timeout:5s}") Duration sendTimeout,
+            @Value("${shopnow.order-stream.max-stalled-senders:64}") int maxStalledSenders) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bufferSize = Math.max(2, bufferSize);
+        this.maxConnections = maxConnections;
+        this.batchSize = Math.max(1, batchSize);
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.senderThreads = Math.max(1, senderThreads);
+        this.maxStalledSenders = Math.max(0, maxStalledSenders);
+        this.pollInterval = pollInterval;
+        this.gapGraceMillis = gapGrace.toMillis();
+        this.retention = retention;
+        this.dispatcher = new Thread(this::dispatch, "order-status-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.senders = new ThreadPoolExecutor(this.senderThreads, this.senderThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "order-status-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        cursor = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+        running = true;
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.close(false)));
+        senders.shutdownNow();
+    }
+
+    /** Appends the order's current status to the change outbox; must run inside the transaction that set it. */
+    public void recordChange(long orderId) {
+        jdbcTemplate.update(RECORD_SQL, Timestamp.valueOf(LocalDateTime.now()), orderId);
+        wakeAfterCommit();
+    }
+
+    public void recordChanges(List<Long> orderIds) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(orderIds.size());
+        for (Long orderId : orderIds) {
+            rows.add(new Object[]{now, orderId});
+        }
+        jdbcTemplate.batchUpdate(RECORD_SQL, rows);
+        wakeAfterCommit();
+    }
+
+    /**
+     * Opens a stream of the user's status changes, optionally for one order.
+     * With {@code lastEventId} the stream first replays the changes after it.
+     */
+    public SseEmitter subscribe(long userId, Long orderId, Long lastEventId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new RuntimeException("Too many order status subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(userId, orderId, lastEventId, emitter);
+        emitter.onCompletion(() -> subscriber.close(false));
+        emitter.onTimeout(() -> subscriber.close(false));
+        emitter.onError(error -> subscriber.close(false));
+        joining.add(subscriber);
+        wakeups.release();
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${shopnow.order-stream.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.offer(HEARTBEAT)));
+    }
+
+    /** Drops connections whose current write has outlived {@code send-timeout}. */
+    @Scheduled(fixedDelayString = "${shopnow.order-stream.stall-check-interval:PT1S}")
+    public void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : sending) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > sendTimeoutNanos) {
+                subscriber.stall(since);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shopnow.order-stream.purge-interval:PT10M}")
+    public void purge() {
+        int purged = jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(LocalDateTime.now().minus(retention)), cursor);
+        if (purged > 0) {
+            log.info("Purged {} order status changes older than {}", purged, retention);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("connections", connections.get());
+        result.put("cursor", cursor);
+        result.put("polls", polls.get());
+        result.put("dispatchedChanges", dispatched.get());
+        result.put("deliveredEvents", delivered.get());
+        result.put("droppedSlowConsumers", droppedSlow.get());
+        result.put("droppedStalledSends", droppedStalled.get());
+        synchronized (senders) {
+            result.put("stalledSenders", stalledSenders);
+        }
+        result.put("skippedGaps", skippedGaps.get());
+        return result;
+    }
+
+    private void wakeAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeups.release();
+                }
+            });
+        } else {
+            wakeups.release();
+        }
+    }
+
+    private void dispatch() {
+        long waitMillis = pollInterval.toMillis();
+        while (running) {
+            try {
+                wakeups.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+                wakeups.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                admitJoining();
+                boolean heldBack = poll();
+                waitMillis = heldBack ? Math.min(pollInterval.toMillis(), 20) : pollInterval.toMillis();
+            } catch (RuntimeException e) {
+                log.error("Order status dispatch failed", e);
+            }
+        }
+    }
+
+    /** Adds a sender to stand in for one blocked in a stalled write, up to {@code max-stalled-senders}. */
+    private boolean lendSender() {
+        synchronized (senders) {
+            if (stalledSenders == maxStalledSenders) {
+                return false;
+            }
+            stalledSenders++;
+            senders.setMaximumPoolSize(senderThreads + stalledSenders);
+            senders.setCorePoolSize(senderThreads + stalledSenders);
+            return true;
+        }
+    }
+
+    private void returnSender() {
+        synchronized (senders) {
+            stalledSenders--;
+            senders.setCorePoolSize(senderThreads + stalledSenders);
+            senders.setMaximumPoolSize(senderThreads + stalledSenders);
+        }
+    }
+
+    private void admitJoining() {
+        Subscriber subscriber;
+        while ((subscriber = joining.poll()) != null) {
+            if (subscriber.closed.get()) {
+                continue;
+            }
+            if (subscriber.lastEventId != null && subscriber.lastEventId < cursor) {
+                List<Change> missed = jdbcTemplate.query(CATCH_UP_SQL, CHANGE_MAPPER,
+                        subscriber.userId, subscriber.lastEventId, cursor, bufferSize - 1);
+                missed.forEach(subscriber::deliver);
+                if (missed.size() == bufferSize - 1) {
+                    // More than one buffer behind: end this stream so the client resumes from the last id it got.
+                    subscriber.offer(RECONNECT);
+                    continue;
+                }
+            }
+            subscribers.computeIfAbsent(subscriber.userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+    }
+
+    /** Dispatches new changes in id order; returns true when changes are being held behind a gap. */
+    private boolean poll() {
+        polls.incrementAndGet();
+        List<Change> changes = jdbcTemplate.query(TAIL_SQL, CHANGE_MAPPER, cursor, batchSize);
+        long next = cursor;
+        for (Change change : changes) {
+            long id = change.dto.getId();
+            if (id != next + 1) {
+                long now = System.currentTimeMillis();
+                if (gapSince == 0) {
+                    gapSince = now;
+                }
+                if (now - gapSince < gapGraceMillis) {
+                    cursor = next;
+                    return true;
+                }
+                skippedGaps.incrementAndGet();
+            }
+            gapSince = 0;
+            Set<Subscriber> listeners = subscribers.get(change.userId);
+            if (listeners != null) {
+                listeners.forEach(subscriber -> subscriber.deliver(change));
+            }
+            dispatched.incrementAndGet();
+            next = id;
+        }
+        cursor = next;
+        return false;
+    }
+
+    private record Change(long userId, OrderStatusChangeDto dto) {
+    }
+
+    private final class Subscriber {
+        final long userId;
+        final Long orderId;
+        final Long lastEventId;
+        final SseEmitter emitter;
+        final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final AtomicBoolean completed = new AtomicBoolean();
+        volatile boolean completeOnClose;
+        // Guarded by this: whether a write timed out, and whether the pool carries an extra thread for it.
+        boolean stalled;
+        boolean lentSender;
+        // System.nanoTime() when the write in progress started, 0 between writes.
+        volatile long sendingSince;
+
+        Subscriber(long userId, Long orderId, Long lastEventId, SseEmitter emitter) {
+            this.userId = userId;
+            this.orderId = orderId;
+            this.lastEventId = lastEventId;
+            this.emitter = emitter;
+        }
+
+        void deliver(Change change) {
+            if (orderId == null || orderId.equals(change.dto.getOrderId())) {
+                offer(change.dto);
+            }
+        }
+
+        void offer(Object item) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(item)) {
+                droppedSlow.incrementAndGet();
+                log.info("Dropping slow order status subscriber for user {}", userId);
+                close(true);
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        void drain() {
+            do {
+                Object item;
+                while (!closed.get() && (item = buffer.poll()) != null) {
+                    if (item == RECONNECT) {
+                        close(true);
+                    } else if (!send(item)) {
+                        close(false);
+                    }
+                }
+                draining.set(false);
+            } while (!closed.get() && !buffer.isEmpty() && draining.compareAndSet(false, true));
+            if (closed.get()) {
+                complete();
+            }
+        }
+
+        private boolean send(Object item) {
+            sending.add(this);
+            sendingSince = System.nanoTime();
+            try {
+                if (item == HEARTBEAT) {
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                } else {
+                    OrderStatusChangeDto change = (OrderStatusChangeDto) item;
+                    emitter.send(SseEmitter.event().id(String.valueOf(change.getId()))
+                            .name("status").data(change));
+                    delivered.incrementAndGet();
+                }
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                return false;
+            } finally {
+                sent();
+            }
+        }
+
+        private synchronized void sent() {
+            sendingSince = 0;
+            sending.remove(this);
+            if (lentSender) {
+                lentSender = false;
+                returnSender();
+            }
+        }
+
+        /**
+         * Drops the connection if the write that started at {@code since} is still
+         * running; the drain completes the response once that write returns.
+         */
+        synchronized void stall(long since) {
+            if (sendingSince != since || stalled) {
+                return;
+            }
+            stalled = true;
+            droppedStalled.incrementAndGet();
+            log.info("Order status write to user {} stalled; dropping the connection", userId);
+            lentSender = lendSender();
+            close(true);
+        }
+
+        /**
+         * Unregisters the subscriber; {@code complete} also ends the response, off
+         * the calling thread, once no write to it is in progress.
+         */
+        void close(boolean complete) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            connections.decrementAndGet();
+            subscribers.computeIfPresent(userId, (id, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+            buffer.clear();
+            if (complete) {
+                completeOnClose = true;
+                // A running drain completes the response itself when its write returns.
+                if (draining.compareAndSet(false, true)) {
+                    senders.execute(this::complete);
+                }
+            }
+        }
+
+        private void complete() {
+            if (completeOnClose && completed.compareAndSet(false, true)) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.shopnow.model.CartItem;
 import com.shopnow.model.User;
 import com.shopnow.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,4 +15,20 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     void deleteByUser(User user);
     Optional<CartItem> findByUserAndProduct(User user, Product product);
     void deleteByUserAndProduct(User user, Product product);
+
+    @Query("SELECT p.id AS productId, p.name AS name, p.price AS price, p.image AS image, " +
+           "p.category AS category, p.rating AS rating, p.description AS description, c.quantity AS quantity " +
+           "FROM CartItem c JOIN c.product p WHERE c.user.id = :userId ORDER BY c.id")
+    List<CartLine> findCartLines(@Param("userId") Long userId);
+
+    interface CartLine {
+        Long getProductId();
+        String getName();
+        Double getPrice();
+        String getImage();
+        String getCategory();
+        Double getRating();
+        String getDescription();
+        Integer getQuantity();
+    }
 }
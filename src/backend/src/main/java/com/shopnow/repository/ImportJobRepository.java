@@ -0,0 +1,10 @@
+package com.shopnow.repository;
+
+import com.shopnow.model.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+    List<ImportJob> findByStatus(String status);
+}
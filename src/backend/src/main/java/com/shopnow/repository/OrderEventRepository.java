@@ -0,0 +1,17 @@
+package com.shopnow.repository;
+
+import com.shopnow.model.OrderEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderEventRepository extends JpaRepository<OrderEvent, Long> {
+    @Query("SELECT e.id FROM OrderEvent e WHERE e.status = 'PENDING' AND e.availableAt <= :now ORDER BY e.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatus(String status);
+}
@@ -1,11 +1,38 @@
 package com.shopnow.repository;
 
 import com.shopnow.model.Order;
-import com.shopnow.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUser(User user);
+    Optional<Order> findByUser_IdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    @Query("SELECT o.id AS id, o.orderNumber AS orderNumber, o.total AS total, o.status AS status, " +
+           "o.createdAt AS createdAt, SIZE(o.items) AS itemCount " +
+           "FROM Order o WHERE o.user.id = :userId AND o.id < :before ORDER BY o.id DESC")
+    List<OrderSummary> findSummaries(@Param("userId") Long userId, @Param("before") Long before, Pageable page);
+
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.user " +
+           "LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.id = :orderId")
+    Optional<Order> findDetailsById(@Param("orderId") Long orderId);
+
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.user " +
+           "LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.id IN :orderIds")
+    List<Order> findAllDetailsById(@Param("orderIds") Collection<Long> orderIds);
+
+    interface OrderSummary {
+        Long getId();
+        String getOrderNumber();
+        Double getTotal();
+        String getStatus();
+        LocalDateTime getCreatedAt();
+        Integer getItemCount();
+    }
 }
@@ -1,10 +1,58 @@
 package com.shopnow.repository;
 
 import com.shopnow.model.Product;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByCategory(String category);
+
+    @Query("SELECT MAX(p.updatedAt) FROM Product p")
+    LocalDateTime findLastUpdate();
+
+    @Query("SELECT p FROM Product p WHERE (:category IS NULL OR p.category = :category) " +
+           "AND p.id > :afterId ORDER BY p.id ASC")
+    List<Product> findPageById(@Param("category") String category,
+                               @Param("afterId") Long afterId,
+                               Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE (:category IS NULL OR p.category = :category) " +
+           "AND p.price >= :afterPrice AND (p.price > :afterPrice OR p.id > :afterId) " +
+           "ORDER BY p.price ASC, p.id ASC")
+    List<Product> findPageByPrice(@Param("category") String category,
+                                  @Param("afterPrice") Double afterPrice,
+                                  @Param("afterId") Long afterId,
+                                  Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE (:category IS NULL OR p.category = :category) " +
+           "AND p.rating <= :afterRating AND (p.rating < :afterRating OR p.id > :afterId) " +
+           "ORDER BY p.rating DESC, p.id ASC")
+    List<Product> findPageByRating(@Param("category") String category,
+                                   @Param("afterRating") Double afterRating,
+                                   @Param("afterId") Long afterId,
+                                   Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE (:category IS NULL OR p.category = :category) " +
+           "AND p.rating IS NULL AND p.id > :afterId ORDER BY p.id ASC")
+    List<Product> findUnratedPage(@Param("category") String category,
+                                  @Param("afterId") Long afterId,
+                                  Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p WHERE (:category IS NULL OR p.category = :category) ORDER BY p.id ASC")
+    Stream<Product> streamByCategory(@Param("category") String category);
 }
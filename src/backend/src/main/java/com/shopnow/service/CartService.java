@@ -1,55 +1,383 @@
 package com.shopnow.service;
 
+import com.shopnow.cart.CartStore;
+import com.shopnow.cart.GuestCartStore;
+import com.shopnow.dto.CartBatchResponse;
+import com.shopnow.dto.CartItemDto;
+import com.shopnow.dto.CartOperation;
+import com.shopnow.dto.CartOperationResult;
+import com.shopnow.dto.CartResponse;
+import com.shopnow.dto.ProductDto;
 import com.shopnow.model.CartItem;
 import com.shopnow.model.Product;
 import com.shopnow.model.User;
 import com.shopnow.repository.CartItemRepository;
-import com.shopnow.repository.ProductRepository;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class CartService {
+    private static final int MAX_BATCH_OPERATIONS = 500;
+
+    // Single-statement upserts; the row lock taken by MERGE serialises concurrent
+    // writers to one line, and FINAL TABLE returns the row as written.
+    private static final String SET_QUANTITY_SQL =
+            "SELECT id, quantity FROM FINAL TABLE (MERGE INTO cart_items t " +
+            "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INT))) s (user_id, product_id, quantity) " +
+            "ON t.user_id = s.user_id AND t.product_id = s.product_id " +
+            "WHEN MATCHED THEN UPDATE SET quantity = s.quantity " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, product_id, quantity) VALUES (s.user_id, s.product_id, s.quantity))";
+    private static final String ADD_QUANTITY_SQL =
+            "SELECT id, quantity FROM FINAL TABLE (MERGE INTO cart_items t " +
+            "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INT))) s (user_id, product_id, quantity) " +
+            "ON t.user_id = s.user_id AND t.product_id = s.product_id " +
+            "WHEN MATCHED THEN UPDATE SET quantity = t.quantity + s.quantity " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, product_id, quantity) VALUES (s.user_id, s.product_id, s.quantity))";
+    private static final String MERGE_ADD_SQL =
+            "MERGE INTO cart_items t " +
+            "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INT))) s (user_id, product_id, quantity) " +
+            "ON t.user_id = s.user_id AND t.product_id = s.product_id " +
+            "WHEN MATCHED THEN UPDATE SET quantity = t.quantity + s.quantity " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, product_id, quantity) VALUES (s.user_id, s.product_id, s.quantity)";
+    private static final String DELETE_EMPTY_SQL =
+            "DELETE FROM cart_items WHERE id = ? AND quantity <= 0";
+    private static final String CHECKOUT_LINES_SQL =
+            "SELECT id, product_id, quantity FROM cart_items WHERE user_id = ? ORDER BY id FOR UPDATE";
+    private static final String DELETE_LINE_SQL =
+            "DELETE FROM cart_items WHERE user_id = ? AND product_id = ?";
+    private static final String DELETE_CHECKED_OUT_SQL =
+            "DELETE FROM cart_items WHERE user_id = ? AND id <= ?";
+
     private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final CartStore cartStore;
+    private final GuestCartStore guestCartStore;
+    private final JdbcTemplate jdbcTemplate;
 
-    public CartService(CartItemRepository cartItemRepository, ProductRepository productRepository) {
+    public CartService(CartItemRepository cartItemRepository, ProductService productService, CartStore cartStore,
+                       GuestCartStore guestCartStore, JdbcTemplate jdbcTemplate) {
         this.cartItemRepository = cartItemRepository;
-        this.productRepository = productRepository;
+        this.productService = productService;
+        this.cartStore = cartStore;
+        this.guestCartStore = guestCartStore;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reads a cart as DTOs: one joined query, or in write-behind mode one cache
+     * lookup that loads any uncached products together. Like the join, lines
+     * whose product no longer exists are left out.
+     */
+    public CartResponse getCart(Long userId) {
+        List<CartItemDto> items = new ArrayList<>();
+        if (cartStore.isEnabled()) {
+            Map<Long, Integer> quantities = cartStore.items(userId);
+            Map<Long, Product> products = productService.findAllCachedById(quantities.keySet());
+            quantities.forEach((productId, quantity) -> {
+                Product product = products.get(productId);
+                if (product != null) {
+                    items.add(new CartItemDto(ProductService.toDto(product), quantity));
+                }
+            });
+        } else {
+            for (CartItemRepository.CartLine line : cartItemRepository.findCartLines(userId)) {
+                items.add(new CartItemDto(new ProductDto(line.getProductId().toString(), line.getName(),
+                        line.getPrice(), line.getImage(), line.getCategory(), line.getRating(),
+                        line.getDescription()), line.getQuantity()));
+            }
+        }
+        return new CartResponse(items);
+    }
+
+    /** Commits the user's pending write-behind changes; call before the transaction that checks the cart out. */
+    public void flushPendingChanges(Long userId) {
+        if (cartStore.isEnabled()) {
+            cartStore.flush(userId);
+        }
     }
 
-    public List<CartItem> getCartItems(User user) {
-        return cartItemRepository.findByUser(user);
+    /**
+     * Returns the persisted cart lines in id order. The rows stay locked until the
+     * calling transaction ends; see {@link #flushPendingChanges(Long)}.
+     */
+    public List<CartItem> getCheckoutItems(User user) {
+        List<CartItem> items = jdbcTemplate.query(CHECKOUT_LINES_SQL, (rs, rowNum) -> {
+            Product product = new Product();
+            product.setId(rs.getLong("product_id"));
+            CartItem item = newCartItem(user, product, rs.getInt("quantity"));
+            item.setId(rs.getLong("id"));
+            return item;
+        }, user.getId());
+        if (!items.isEmpty()) {
+            Set<Long> productIds = new HashSet<>();
+            items.forEach(item -> productIds.add(item.getProduct().getId()));
+            Map<Long, Product> products = productService.findAllById(productIds);
+            items.forEach(item -> item.setProduct(products.get(item.getProduct().getId())));
+        }
+        return items;
     }
 
     @Transactional
     public CartItem addToCart(User user, Long productId, Integer quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-
-        CartItem cartItem = cartItemRepository.findByUserAndProduct(user, product)
-                .orElseGet(() -> {
-                    CartItem newItem = new CartItem();
-                    newItem.setUser(user);
-                    newItem.setProduct(product);
-                    return newItem;
-                });
+        Product product = productService.findById(productId);
+        if (cartStore.isEnabled()) {
+            cartStore.set(user.getId(), productId, quantity);
+            return newCartItem(user, product, quantity);
+        }
+        return upsert(SET_QUANTITY_SQL, user, product, quantity);
+    }
 
-        cartItem.setQuantity(quantity);
-        return cartItemRepository.save(cartItem);
+    /** Adds {@code delta} (which may be negative) to a cart line; a line that drops to zero is removed. */
+    @Transactional
+    public CartItem incrementCart(User user, Long productId, Integer delta) {
+        if (delta == null || delta == 0) {
+            throw new RuntimeException("Quantity delta must not be zero");
+        }
+        Product product = productService.findById(productId);
+        if (cartStore.isEnabled()) {
+            return newCartItem(user, product, cartStore.add(user.getId(), productId, delta));
+        }
+        CartItem cartItem = upsert(ADD_QUANTITY_SQL, user, product, delta);
+        if (cartItem.getQuantity() <= 0) {
+            jdbcTemplate.update(DELETE_EMPTY_SQL, cartItem.getId());
+            cartItem.setId(null);
+            cartItem.setQuantity(0);
+        }
+        return cartItem;
     }
 
     @Transactional
     public void removeFromCart(User user, Long productId) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+        Product product = productService.findById(productId);
+        if (cartStore.isEnabled()) {
+            cartStore.remove(user.getId(), productId);
+            return;
+        }
         cartItemRepository.deleteByUserAndProduct(user, product);
     }
 
     @Transactional
     public void clearCart(User user) {
+        if (cartStore.isEnabled()) {
+            cartStore.clear(user.getId());
+            return;
+        }
         cartItemRepository.deleteByUser(user);
     }
+
+    /**
+     * Applies add (increment), update (set, 0 removes) and remove operations in
+     * order as one unit. Every product is resolved up front with a single query;
+     * if any operation is invalid nothing is applied and the results say why.
+     */
+    @Transactional
+    public CartBatchResponse applyBatch(User user, List<CartOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new RuntimeException("No cart operations given");
+        }
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new RuntimeException("Too many cart operations: " + operations.size());
+        }
+
+        Set<Long> productIds = new HashSet<>();
+        for (CartOperation operation : operations) {
+            if (operation.getProductId() != null) {
+                productIds.add(operation.getProductId());
+            }
+        }
+        Map<Long, Product> products = productService.findAllById(productIds);
+
+        List<CartOperationResult> results = new ArrayList<>(operations.size());
+        boolean valid = true;
+        for (int i = 0; i < operations.size(); i++) {
+            CartOperation operation = operations.get(i);
+            String error = validate(operation, products);
+            valid &= error == null;
+            results.add(new CartOperationResult(i, operation.getOp(), operation.getProductId(),
+                    error == null ? "OK" : "REJECTED", null, error));
+        }
+        if (!valid) {
+            for (CartOperationResult result : results) {
+                if (result.getError() == null) {
+                    result.setStatus("SKIPPED");
+                }
+            }
+            return new CartBatchResponse(false, results, getCart(user.getId()).getItems());
+        }
+
+        if (!cartStore.isEnabled()) {
+            applyStatements(user, operations, products, results);
+            return new CartBatchResponse(true, results, getCart(user.getId()).getItems());
+        }
+
+        Map<Long, Integer> quantities = cartStore.apply(user.getId(),
+                cart -> applyOperations(cart, operations, results));
+        Set<Long> missing = new HashSet<>(quantities.keySet());
+        missing.removeAll(products.keySet());
+        if (!missing.isEmpty()) {
+            products.putAll(productService.findAllCachedById(missing));
+        }
+        List<CartItemDto> items = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            if (product != null) {
+                items.add(new CartItemDto(ProductService.toDto(product), quantity));
+            }
+        });
+        return new CartBatchResponse(true, results, items);
+    }
+
+    /**
+     * Adds a guest cart's lines to the user's cart, summing quantities for products
+     * already there, with one product lookup and one batched MERGE. The guest cart
+     * is only deleted once the merge has committed, so a rolled-back login keeps it.
+     */
+    @Transactional
+    public void mergeGuestCart(User user, String guestCartToken) {
+        Map<Long, Integer> guestItems = guestCartStore.peek(guestCartToken);
+        if (guestItems.isEmpty()) {
+            return;
+        }
+        Map<Long, Product> products = productService.findAllById(guestItems.keySet());
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        guestItems.forEach((productId, quantity) -> {
+            if (products.containsKey(productId)) {
+                lines.put(productId, quantity);
+            }
+        });
+
+        if (cartStore.isEnabled()) {
+            cartStore.apply(user.getId(), cart -> lines.forEach((productId, quantity) ->
+                    cart.merge(productId, quantity, Integer::sum)));
+        } else {
+            List<Object[]> rows = new ArrayList<>(lines.size());
+            lines.forEach((productId, quantity) -> rows.add(new Object[]{user.getId(), productId, quantity}));
+            jdbcTemplate.batchUpdate(MERGE_ADD_SQL, rows);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                guestCartStore.markMerged(guestCartToken);
+            }
+        });
+    }
+
+    /**
+     * Deletes the cart lines consumed by checkout, up to the last one read. Once
+     * the checkout commits, the same lines leave the in-memory cart too; lines
+     * changed or added meanwhile stay in both.
+     */
+    @Transactional
+    public void clearCheckedOutCart(User user, List<CartItem> checkedOut) {
+        jdbcTemplate.update(DELETE_CHECKED_OUT_SQL, user.getId(), checkedOut.get(checkedOut.size() - 1).getId());
+        if (cartStore.isEnabled()) {
+            Map<Long, Integer> lines = new HashMap<>();
+            checkedOut.forEach(item -> lines.put(item.getProduct().getId(), item.getQuantity()));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cartStore.removeCheckedOut(user.getId(), lines);
+                }
+            });
+        }
+    }
+
+    private static String validate(CartOperation operation, Map<Long, Product> products) {
+        String op = operation.getOp() == null ? "" : operation.getOp().toUpperCase(Locale.ROOT);
+        if (operation.getProductId() == null) {
+            return "Missing productId";
+        }
+        return switch (op) {
+            case CartOperation.ADD -> operation.getQuantity() == null || operation.getQuantity() < 1
+                    ? "Quantity must be at least 1"
+                    : products.containsKey(operation.getProductId()) ? null : "Product not found";
+            case CartOperation.UPDATE -> operation.getQuantity() == null || operation.getQuantity() < 0
+                    ? "Quantity must not be negative"
+                    : products.containsKey(operation.getProductId()) ? null : "Product not found";
+            case CartOperation.REMOVE -> null;
+            default -> "Unsupported operation: " + operation.getOp();
+        };
+    }
+
+    private static void applyOperations(Map<Long, Integer> cart, List<CartOperation> operations,
+                                        List<CartOperationResult> results) {
+        for (int i = 0; i < operations.size(); i++) {
+            CartOperation operation = operations.get(i);
+            Long productId = operation.getProductId();
+            switch (operation.getOp().toUpperCase(Locale.ROOT)) {
+                case CartOperation.ADD -> cart.merge(productId, operation.getQuantity(), Integer::sum);
+                case CartOperation.UPDATE -> {
+                    if (operation.getQuantity() == 0) {
+                        cart.remove(productId);
+                    } else {
+                        cart.put(productId, operation.getQuantity());
+                    }
+                }
+                default -> cart.remove(productId);
+            }
+            results.get(i).setQuantity(cart.get(productId));
+        }
+    }
+
+    /**
+     * Applies the operations to the table with the same single-statement upserts
+     * as the one-line endpoints, so concurrent increments and first inserts of a
+     * line interleave with the batch instead of being overwritten by it.
+     */
+    private void applyStatements(User user, List<CartOperation> operations, Map<Long, Product> products,
+                                 List<CartOperationResult> results) {
+        for (int i = 0; i < operations.size(); i++) {
+            CartOperation operation = operations.get(i);
+            Product product = products.get(operation.getProductId());
+            Integer quantity = switch (operation.getOp().toUpperCase(Locale.ROOT)) {
+                case CartOperation.ADD -> upsert(ADD_QUANTITY_SQL, user, product, operation.getQuantity()).getQuantity();
+                case CartOperation.UPDATE -> operation.getQuantity() == 0
+                        ? null
+                        : upsert(SET_QUANTITY_SQL, user, product, operation.getQuantity()).getQuantity();
+                default -> null;
+            };
+            if (quantity == null) {
+                jdbcTemplate.update(DELETE_LINE_SQL, user.getId(), operation.getProductId());
+            }
+            results.get(i).setQuantity(quantity);
+        }
+    }
+
+    private CartItem upsert(String sql, User user, Product product, int quantity) {
+        try {
+            return queryUpsert(sql, user, product, quantity);
+        } catch (DuplicateKeyException e) {
+            // Two first-time inserts of the same line raced; the loser now matches the winner's row.
+            return queryUpsert(sql, user, product, quantity);
+        }
+    }
+
+    private CartItem queryUpsert(String sql, User user, Product product, int quantity) {
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
+            CartItem cartItem = newCartItem(user, product, rs.getInt(2));
+            cartItem.setId(rs.getLong(1));
+            return cartItem;
+        }, user.getId(), product.getId(), quantity);
+    }
+
+    private static CartItem newCartItem(User user, Product product, Integer quantity) {
+        CartItem cartItem = new CartItem();
+        cartItem.setUser(user);
+        cartItem.setProduct(product);
+        cartItem.setQuantity(quantity);
+        return cartItem;
+    }
 }
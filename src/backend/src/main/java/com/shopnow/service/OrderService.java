@@ -1,64 +1,265 @@
 package com.shopnow.service;
 
+import com.shopnow.archive.ArchivedOrder;
+import com.shopnow.archive.OrderArchive;
+import com.shopnow.dto.OrderHistoryResponse;
+import com.shopnow.dto.OrderSummaryDto;
+import com.shopnow.id.IdGenerator;
+import com.shopnow.inventory.InventoryEngine;
 import com.shopnow.model.CartItem;
 import com.shopnow.model.Order;
+import com.shopnow.model.OrderEvent;
+import com.shopnow.model.OrderItem;
+import com.shopnow.model.Product;
 import com.shopnow.model.User;
+import com.shopnow.order.CheckoutBatcher;
+import com.shopnow.order.OrderPlacedEvent;
+import com.shopnow.order.OrderStatusStream;
+import com.shopnow.repository.OrderEventRepository;
 import com.shopnow.repository.OrderRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 public class OrderService {
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
+    // Copies the locked cart lines into order_items at current prices, numbering them from a reserved id block.
+    private static final String CONVERT_CART_SQL =
+            "SELECT COUNT(*), SUM(price * quantity) FROM FINAL TABLE (INSERT INTO order_items "
+                    + "(id, order_id, product_id, quantity, price) "
+                    + "SELECT ? + ROW_NUMBER() OVER (ORDER BY c.id) - 1, ?, c.product_id, c.quantity, p.price "
+                    + "FROM cart_items c JOIN products p ON p.id = c.product_id "
+                    + "WHERE c.user_id = ? AND c.id > ? AND c.id <= ?)";
+
     private final OrderRepository orderRepository;
+    private final OrderEventRepository orderEventRepository;
     private final CartService cartService;
     private final UserService userService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CheckoutBatcher checkoutBatcher;
+    private final InventoryEngine inventoryEngine;
+    private final OrderArchive orderArchive;
+    private final ProductService productService;
+    private final OrderStatusStream orderStatusStream;
+    private final JdbcTemplate jdbcTemplate;
+    private final IdGenerator idGenerator;
 
-    public OrderService(OrderRepository orderRepository, CartService cartService, UserService userService) {
+    public OrderService(OrderRepository orderRepository, OrderEventRepository orderEventRepository,
+                        CartService cartService, UserService userService,
+                        TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+                        CheckoutBatcher checkoutBatcher, InventoryEngine inventoryEngine,
+                        OrderArchive orderArchive, ProductService productService,
+                        OrderStatusStream orderStatusStream, JdbcTemplate jdbcTemplate,
+                        IdGenerator idGenerator) {
         this.orderRepository = orderRepository;
+        this.orderEventRepository = orderEventRepository;
         this.cartService = cartService;
         this.userService = userService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.checkoutBatcher = checkoutBatcher;
+        this.inventoryEngine = inventoryEngine;
+        this.orderArchive = orderArchive;
+        this.productService = productService;
+        this.orderStatusStream = orderStatusStream;
+        this.jdbcTemplate = jdbcTemplate;
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * Places an order from the user's cart. A repeated call with the same
+     * idempotency key returns the order created by the first call instead of
+     * placing another. A concurrent duplicate either hits the unique key or,
+     * having waited on the first call's cart locks, finds the cart already
+     * checked out; in both cases it returns the first call's order.
+     * With group commit enabled the order is written by {@link CheckoutBatcher}
+     * together with other concurrent checkouts.
+     */
+    public Order createOrder(Long userId, String shippingAddress, String paymentMethod, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > 255) {
+                throw new RuntimeException("Invalid idempotency key");
+            }
+            Optional<Order> existing = findByIdempotencyKey(userId, idempotencyKey);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+        try {
+            if (checkoutBatcher.isEnabled()) {
+                return checkoutBatcher.submit(userId, shippingAddress, paymentMethod, idempotencyKey);
+            }
+            cartService.flushPendingChanges(userId);
+            return transactionTemplate.execute(status ->
+                    placeOrder(userId, shippingAddress, paymentMethod, idempotencyKey));
+        } catch (RuntimeException e) {
+            if (idempotencyKey == null) {
+                throw e;
+            }
+            return orderRepository.findByUser_IdAndIdempotencyKey(userId, idempotencyKey).orElseThrow(() -> e);
+        }
     }
 
-    @Transactional
-    public Order createOrder(Long userId, String shippingAddress, String paymentMethod) {
-        User user = userService.findById(userId);
-        List<CartItem> cartItems = cartService.getCartItems(user);
+    /** Looks the key up in the hot table and then, once the order may have been archived, in the archive. */
+    private Optional<Order> findByIdempotencyKey(Long userId, String idempotencyKey) {
+        Optional<Order> order = orderRepository.findByUser_IdAndIdempotencyKey(userId, idempotencyKey);
+        if (order.isEmpty() && orderArchive.isEnabled()) {
+            order = orderArchive.findByIdempotencyKey(userId, idempotencyKey).map(this::toOrder);
+        }
+        return order;
+    }
+
+    private Order placeOrder(Long userId, String shippingAddress, String paymentMethod, String idempotencyKey) {
+        User user = userService.reference(userId);
+        List<CartItem> cartItems = cartService.getCheckoutItems(user);
         
         if (cartItems.isEmpty()) {
             throw new RuntimeException("Cart is empty");
         }
+        inventoryEngine.reserveForTransaction(quantities(cartItems));
 
         Order order = new Order();
         order.setUser(user);
-        order.setItems(cartItems);
         order.setShippingAddress(shippingAddress);
         order.setPaymentMethod(paymentMethod);
         order.setStatus("PENDING");
         order.setCreatedAt(LocalDateTime.now());
         order.setTotal(calculateTotal(cartItems));
+        order.setIdempotencyKey(idempotencyKey);
 
-        orderRepository.save(order);
-        cartService.clearCart(user);
+        orderRepository.saveAndFlush(order);
+        order.setItems(convertCart(order, cartItems));
+        cartService.clearCheckedOutCart(user, cartItems);
+        orderStatusStream.recordChange(order.getId());
+
+        OrderEvent event = new OrderEvent();
+        event.setOrderId(order.getId());
+        event.setType("ORDER_PLACED");
+        event.setStatus(OrderEvent.PENDING);
+        event.setAttempts(0);
+        event.setCreatedAt(order.getCreatedAt());
+        event.setAvailableAt(order.getCreatedAt());
+        orderEventRepository.save(event);
+        eventPublisher.publishEvent(new OrderPlacedEvent(order, event.getId()));
 
         return order;
     }
 
+    /**
+     * Writes the order lines with one INSERT ... SELECT over the locked cart rows
+     * per block of ids the generator can reserve at once, so one statement for
+     * any usual cart, and checks that it wrote exactly the lines and total the
+     * order was priced from.
+     */
+    private List<OrderItem> convertCart(Order order, List<CartItem> cartItems) {
+        List<OrderItem> items = new ArrayList<>(cartItems.size());
+        int[] written = new int[1];
+        double[] total = new double[1];
+        for (int start = 0; start < cartItems.size(); start += idGenerator.maxBlockSize()) {
+            int end = Math.min(start + idGenerator.maxBlockSize(), cartItems.size());
+            long firstId = idGenerator.nextIds(end - start);
+            for (CartItem cartItem : cartItems.subList(start, end)) {
+                Product product = cartItem.getProduct();
+                items.add(new OrderItem(firstId + items.size() - start, order, product, cartItem.getQuantity(),
+                        product.getPrice()));
+            }
+            long afterLineId = start == 0 ? 0 : cartItems.get(start - 1).getId();
+            jdbcTemplate.query(CONVERT_CART_SQL, rs -> {
+                written[0] += rs.getInt(1);
+                total[0] += rs.getDouble(2);
+            }, firstId, order.getId(), order.getUser().getId(), afterLineId, cartItems.get(end - 1).getId());
+        }
+        if (written[0] != items.size() || Math.abs(total[0] - order.getTotal()) >= 0.005) {
+            throw new RuntimeException("Cart or prices changed during checkout");
+        }
+        return items;
+    }
+
+    private static Map<Long, Integer> quantities(List<CartItem> items) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem item : items) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
     private double calculateTotal(List<CartItem> items) {
         return items.stream()
                 .mapToDouble(item -> item.getProduct().getPrice() * item.getQuantity())
                 .sum();
     }
 
-    public List<Order> getUserOrders(Long userId) {
-        User user = userService.findById(userId);
-        return orderRepository.findByUser(user);
+    /**
+     * Returns the user's orders newest first, one page of summaries per call,
+     * keyed on the order id. Archived orders are older than every hot order, so
+     * a page continues into the archive once the hot rows run out.
+     */
+    public OrderHistoryResponse getUserOrders(Long userId, Long before, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        long cursor = before == null ? Long.MAX_VALUE : before;
+        List<OrderSummaryDto> orders = new ArrayList<>(pageSize + 1);
+        for (OrderRepository.OrderSummary row : orderRepository.findSummaries(userId, cursor,
+                PageRequest.of(0, pageSize + 1))) {
+            orders.add(new OrderSummaryDto(row.getId(), row.getOrderNumber(), row.getTotal(), row.getStatus(),
+                    row.getCreatedAt(), row.getItemCount()));
+            cursor = row.getId();
+        }
+        if (orders.size() <= pageSize && orderArchive.isEnabled()) {
+            for (ArchivedOrder archived : orderArchive.findByUser(userId, cursor, pageSize + 1 - orders.size())) {
+                orders.add(new OrderSummaryDto(archived.getId(), archived.getOrderNumber(), archived.getTotal(),
+                        archived.getStatus(), archived.getCreatedAt(), archived.getLines().size()));
+            }
+        }
+        Long nextCursor = null;
+        if (orders.size() > pageSize) {
+            orders = orders.subList(0, pageSize);
+            nextCursor = orders.get(pageSize - 1).getId();
+        }
+        return new OrderHistoryResponse(orders, nextCursor);
     }
 
     public Order getOrder(Long orderId) {
-        return orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found"));
+        Optional<Order> order = orderRepository.findDetailsById(orderId);
+        if (order.isEmpty() && orderArchive.isEnabled()) {
+            order = orderArchive.findById(orderId).map(this::toOrder);
+        }
+        return order.orElseThrow(() -> new RuntimeException("Order not found"));
+    }
+
+    private Order toOrder(ArchivedOrder archived) {
+        User user = userService.reference(archived.getUserId());
+        List<Long> productIds = new ArrayList<>();
+        archived.getLines().forEach(line -> productIds.add(line.getProductId()));
+        Map<Long, Product> products = productService.findAllById(productIds);
+
+        Order order = new Order();
+        List<OrderItem> items = new ArrayList<>(archived.getLines().size());
+        for (ArchivedOrder.Line line : archived.getLines()) {
+            items.add(new OrderItem(null, order, products.get(line.getProductId()), line.getQuantity(),
+                    line.getPrice()));
+        }
+        order.setId(archived.getId());
+        order.setOrderNumber(archived.getOrderNumber());
+        order.setUser(user);
+        order.setItems(items);
+        order.setTotal(archived.getTotal());
+        order.setStatus(archived.getStatus());
+        order.setShippingAddress(archived.getShippingAddress());
+        order.setPaymentMethod(archived.getPaymentMethod());
+        order.setCreatedAt(archived.getCreatedAt());
+        order.setIdempotencyKey(archived.getIdempotencyKey());
+        return order;
     }
 }
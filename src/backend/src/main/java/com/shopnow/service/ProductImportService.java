@@ -0,0 +1,280 @@
+package com.shopnow.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopnow.catalog.CatalogReloadEvent;
+import com.shopnow.catalog.ProductFeedReader;
+import com.shopnow.dto.ProductImportRow;
+import com.shopnow.model.ImportJob;
+import com.shopnow.repository.ImportJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Service
+public class ProductImportService {
+    public static final String INSERT = "INSERT";
+    public static final String UPSERT = "UPSERT";
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    // Upserts are keyed on the feed's own ids, kept in feed_id, so they never
+    // claim ids the identity column later hands to products created through the API.
+    private static final String UPSERT_SQL =
+            "MERGE INTO products (feed_id, name, price, image, category, rating, description, updated_at) KEY (feed_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
+    private static final String INSERT_SQL =
+            "INSERT INTO products (name, price, image, category, rating, description, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
+    private static final String PROGRESS_SQL =
+            "UPDATE import_jobs SET processed_rows = ?, imported_rows = ?, rejected_rows = ?, last_error = ?, " +
+            "updated_at = ? WHERE id = ?";
+
+    private final ImportJobRepository importJobRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int defaultChunkSize;
+    private final Path directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ProductImportService(
+            ImportJobRepository importJobRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${shopnow.import.chunk-size:5000}") int defaultChunkSize,
+            @Value("${shopnow.import.directory:data/imports}") String directory) {
+        this.importJobRepository = importJobRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.defaultChunkSize = defaultChunkSize;
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Starts importing a feed file. The source names a file inside the
+     * configured import directory; paths that resolve outside it are refused.
+     */
+    public ImportJob startImport(String source, String format, String mode, Integer chunkSize) {
+        if (!Files.isReadable(resolve(source))) {
+            throw new RuntimeException("Import source not readable: " + source);
+        }
+        if (!INSERT.equals(mode) && !UPSERT.equals(mode)) {
+            throw new RuntimeException("Unsupported import mode: " + mode);
+        }
+        ImportJob job = new ImportJob();
+        job.setSource(source);
+        job.setFormat(format);
+        job.setMode(mode);
+        job.setStatus("RUNNING");
+        job.setChunkSize(chunkSize == null || chunkSize <= 0 ? defaultChunkSize : chunkSize);
+        job.setProcessedRows(0L);
+        job.setImportedRows(0L);
+        job.setRejectedRows(0L);
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        ImportJob saved = importJobRepository.save(job);
+        executor.submit(() -> run(saved.getId()));
+        return saved;
+    }
+
+    public ImportJob resumeImport(Long jobId) {
+        ImportJob job = getJob(jobId);
+        if ("COMPLETED".equals(job.getStatus())) {
+            return job;
+        }
+        job.setStatus("RUNNING");
+        job.setUpdatedAt(LocalDateTime.now());
+        ImportJob saved = importJobRepository.save(job);
+        executor.submit(() -> run(saved.getId()));
+        return saved;
+    }
+
+    public ImportJob getJob(Long jobId) {
+        return importJobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Import job not found"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedImports() {
+        for (ImportJob job : importJobRepository.findByStatus("RUNNING")) {
+            log.info("Resuming import {} from row {}", job.getId(), job.getProcessedRows());
+            executor.submit(() -> run(job.getId()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Long jobId) {
+        ImportJob job = getJob(jobId);
+        long processed = job.getProcessedRows();
+        long imported = job.getImportedRows();
+        long rejected = job.getRejectedRows();
+        String lastError = job.getLastError();
+
+        try (BufferedReader in = Files.newBufferedReader(resolve(job.getSource()), StandardCharsets.UTF_8);
+             ProductFeedReader feed = ProductFeedReader.open(in, job.getFormat(), objectMapper)) {
+            feed.skip(processed);
+
+            List<ProductImportRow> chunk = new ArrayList<>(job.getChunkSize());
+            boolean exhausted = false;
+            while (!exhausted && !Thread.currentThread().isInterrupted()) {
+                chunk.clear();
+                int malformed = 0;
+                while (chunk.size() + malformed < job.getChunkSize()) {
+                    try {
+                        ProductImportRow row = feed.next();
+                        if (row == null) {
+                            exhausted = true;
+                            break;
+                        }
+                        chunk.add(row);
+                    } catch (IllegalArgumentException e) {
+                        malformed++;
+                        lastError = e.getMessage();
+                    }
+                }
+
+                boolean upsert = UPSERT.equals(job.getMode());
+                List<String> errors = chunk.parallelStream().map(row -> validate(row, upsert)).toList();
+                List<ProductImportRow> valid = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (errors.get(i) != null) {
+                        lastError = errors.get(i);
+                    } else {
+                        valid.add(chunk.get(i));
+                    }
+                }
+
+                processed += chunk.size() + malformed;
+                imported += valid.size();
+                rejected += chunk.size() - valid.size() + malformed;
+                writeChunk(jobId, upsert, valid, processed, imported, rejected, lastError);
+            }
+
+            if (exhausted) {
+                finish(jobId, "COMPLETED", null);
+                log.info("Import {} completed: {} imported, {} rejected", jobId, imported, rejected);
+            }
+        } catch (Exception e) {
+            log.error("Import {} failed after {} rows", jobId, processed, e);
+            finish(jobId, "FAILED", e.getMessage());
+        }
+    }
+
+    private Path resolve(String source) {
+        Path path = directory.resolve(source).normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            throw new RuntimeException("Import source must be a file in the import directory");
+        }
+        return path;
+    }
+
+    private void writeChunk(Long jobId, boolean upsert, List<ProductImportRow> rows,
+                            long processed, long imported, long rejected, String lastError) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (upsert) {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), (ps, row) -> {
+                    ps.setLong(1, row.getId());
+                    bindColumns(ps, 2, row);
+                });
+            } else {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> bindColumns(ps, 1, row));
+            }
+            jdbcTemplate.update(PROGRESS_SQL, processed, imported, rejected, truncate(lastError),
+                    Timestamp.valueOf(LocalDateTime.now()), jobId);
+        });
+    }
+
+    private void finish(Long jobId, String status, String error) {
+        ImportJob job = getJob(jobId);
+        job.setStatus(status);
+        if (error != null) {
+            job.setLastError(truncate(error));
+        }
+        job.setUpdatedAt(LocalDateTime.now());
+        importJobRepository.save(job);
+        eventPublisher.publishEvent(new CatalogReloadEvent());
+    }
+
+    private static void bindColumns(PreparedStatement ps, int start, ProductImportRow row)
+            throws SQLException {
+        ps.setString(start, row.getName().trim());
+        ps.setDouble(start + 1, row.getPrice());
+        ps.setString(start + 2, row.getImage());
+        ps.setString(start + 3, row.getCategory());
+        if (row.getRating() == null) {
+            ps.setNull(start + 4, Types.DOUBLE);
+        } else {
+            ps.setDouble(start + 4, row.getRating());
+        }
+        ps.setString(start + 5, row.getDescription());
+    }
+
+    static String validate(ProductImportRow row, boolean upsert) {
+        if (upsert && row.getId() == null) {
+            return "Row is missing an id";
+        }
+        if (row.getName() == null || row.getName().isBlank()) {
+            return "Row is missing a name";
+        }
+        if (row.getName().length() > 255) {
+            return "Name too long: " + row.getName().substring(0, 40);
+        }
+        if (row.getPrice() == null || row.getPrice() < 0 || !Double.isFinite(row.getPrice())) {
+            return "Invalid price for " + row.getName();
+        }
+        if (row.getRating() != null && !(row.getRating() >= 0 && row.getRating() <= 5)) {
+            return "Invalid rating for " + row.getName();
+        }
+        if (row.getCategory() != null && row.getCategory().length() > 255) {
+            return "Category too long for " + row.getName();
+        }
+        if (row.getImage() != null && row.getImage().length() > 1000) {
+            return "Image URL too long for " + row.getName();
+        }
+        if (row.getDescription() != null && row.getDescription().length() > 1000) {
+            return "Description too long for " + row.getName();
+        }
+        if (upsert && row.getId() <= 0) {
+            return "Invalid id for " + row.getName();
+        }
+        return null;
+    }
+
+    private static String truncate(String message) {
+        return message == null || message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+}
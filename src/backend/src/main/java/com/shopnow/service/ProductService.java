@@ -0,0 +1,202 @@
+package com.shopnow.service;
+
+import com.shopnow.catalog.ProductCache;
+import com.shopnow.catalog.ProductChangedEvent;
+import com.shopnow.dto.ProductDto;
+import com.shopnow.dto.ProductPageResponse;
+import com.shopnow.dto.ProductRequest;
+import com.shopnow.model.Product;
+import com.shopnow.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Service
+public class ProductService {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Set<String> SORTS = Set.of("id", "price", "rating");
+
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final ProductCache productCache;
+
+    public ProductService(ProductRepository productRepository, ApplicationEventPublisher eventPublisher,
+                          EntityManager entityManager, ProductCache productCache) {
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.productCache = productCache;
+    }
+
+    public Product findById(Long id) {
+        return productCache.get(id)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+    }
+
+    /** Like {@link #findAllById(Collection)} but served from the product cache; for reads only. */
+    public Map<Long, Product> findAllCachedById(Collection<Long> ids) {
+        return productCache.getAll(ids);
+    }
+
+    public Map<Long, Product> findAllById(Collection<Long> ids) {
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(ids)) {
+            products.put(product.getId(), product);
+        }
+        return products;
+    }
+
+    @Transactional
+    public Product save(Product product) {
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved.getId(), saved));
+        return saved;
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        productRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProductChangedEvent(id, null));
+    }
+
+    public ProductPageResponse listProducts(String sort, String category, String cursor, int size) {
+        Pageable limit = PageRequest.of(0, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        if (!SORTS.contains(sort)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported sort: " + sort);
+        }
+        Cursor position = decodeCursor(sort, cursor);
+        long afterId = position == null ? 0L : position.id();
+
+        List<Product> products = switch (sort) {
+            case "price" -> productRepository.findPageByPrice(category,
+                    position == null ? -Double.MAX_VALUE : position.value(), afterId, limit);
+            case "rating" -> ratingPage(category, position, limit);
+            default -> productRepository.findPageById(category, afterId, limit);
+        };
+
+        String nextCursor = null;
+        if (products.size() == limit.getPageSize()) {
+            Product last = products.get(products.size() - 1);
+            nextCursor = encodeCursor(sortValue(sort, last), last.getId());
+        }
+        return new ProductPageResponse(products.stream().map(ProductService::toDto).toList(), nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamProducts(String category, Consumer<Product> consumer) {
+        try (Stream<Product> products = productRepository.streamByCategory(category)) {
+            products.forEach(product -> {
+                consumer.accept(product);
+                entityManager.detach(product);
+            });
+        }
+    }
+
+    public static ProductDto toDto(Product product) {
+        return new ProductDto(
+                product.getId().toString(),
+                product.getName(),
+                product.getPrice(),
+                product.getImage(),
+                product.getCategory(),
+                product.getRating(),
+                product.getDescription()
+        );
+    }
+
+    /** Builds the entity for a create or update; stock is left to InventoryEngine. */
+    public static Product fromRequest(Long id, ProductRequest request) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(request.getName());
+        product.setPrice(request.getPrice());
+        product.setImage(request.getImage());
+        product.setCategory(request.getCategory());
+        product.setRating(request.getRating());
+        product.setDescription(request.getDescription());
+        return product;
+    }
+
+    /**
+     * Rated products best first, then the unrated ones by id. Each part is a
+     * range over its own index; a cursor with an empty rating is in the second.
+     */
+    private List<Product> ratingPage(String category, Cursor position, Pageable limit) {
+        if (position != null && position.value() == null) {
+            return productRepository.findUnratedPage(category, position.id(), limit);
+        }
+        List<Product> rated = productRepository.findPageByRating(category,
+                position == null ? Double.MAX_VALUE : position.value(), position == null ? 0L : position.id(), limit);
+        if (rated.size() == limit.getPageSize()) {
+            return rated;
+        }
+        List<Product> page = new ArrayList<>(rated);
+        page.addAll(productRepository.findUnratedPage(category, 0L,
+                PageRequest.of(0, limit.getPageSize() - rated.size())));
+        return page;
+    }
+
+    private static String sortValue(String sort, Product product) {
+        return switch (sort) {
+            case "price" -> product.getPrice().toString();
+            case "rating" -> product.getRating() == null ? "" : product.getRating().toString();
+            default -> "";
+        };
+    }
+
+    private static String encodeCursor(String sortValue, Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((sortValue + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Parses a cursor for the given sort; anything malformed is the client's error, not a 500. */
+    private static Cursor decodeCursor(String sort, String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException();
+            }
+            String value = decoded.substring(0, separator);
+            long id = Long.parseLong(decoded.substring(separator + 1));
+            return switch (sort) {
+                case "price" -> new Cursor(finite(Double.parseDouble(value)), id);
+                case "rating" -> new Cursor(value.isEmpty() ? null : finite(Double.parseDouble(value)), id);
+                default -> new Cursor(null, id);
+            };
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private static double finite(double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException();
+        }
+        return value;
+    }
+
+    /** The last row of the previous page: its sort value (null for id order or no rating) and id. */
+    private record Cursor(Double value, long id) {
+    }
+}
@@ -3,6 +3,8 @@ package com.shopnow.service;
 import com.shopnow.dto.RegisterRequest;
 import com.shopnow.model.User;
 import com.shopnow.repository.UserRepository;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -10,7 +12,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class UserService implements UserDetailsService {
@@ -30,10 +32,15 @@ public class UserService implements UserDetailsService {
         return new org.springframework.security.core.userdetails.User(
                 user.getEmail(),
                 user.getPassword(),
-                new ArrayList<>()
+                authorities(user)
         );
     }
 
+    /** Returns the authorities granted to the user's role, e.g. ROLE_ADMIN. */
+    public static List<GrantedAuthority> authorities(User user) {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + user.getRole()));
+    }
+
     public User register(RegisterRequest request) {
         if (userRepository.existsByEmail(request.getEmail())) {
             throw new RuntimeException("Email already registered");
@@ -58,4 +65,14 @@ public class UserService implements UserDetailsService {
         return userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
+
+    /**
+     * Returns a detached user carrying only the id, for an already authenticated
+     * caller whose row is only needed as a foreign key.
+     */
+    public User reference(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
 }
@@ -1,7 +1,7 @@
 -- Sample Users
-INSERT INTO users (email, password, first_name, last_name, created_at) VALUES
-('john.doe@example.com', '$2a$10$Xl0yhvzLIaJCDdKBS0Lld.ksK7c2Zytg/ZKFdtIz/q.HII6nwUGCW', 'John', 'Doe', CURRENT_TIMESTAMP),
-('jane.smith@example.com', '$2a$10$VK/DtGPGSOFd8pkJh8v3A.kb4qvwGUH8FqXrh2mZFn.0L9TgIWlBi', 'Jane', 'Smith', CURRENT_TIMESTAMP);
+INSERT INTO users (email, password, first_name, last_name, role, created_at) VALUES
+('john.doe@example.com', '$2a$10$Xl0yhvzLIaJCDdKBS0Lld.ksK7c2Zytg/ZKFdtIz/q.HII6nwUGCW', 'John', 'Doe', 'ADMIN', CURRENT_TIMESTAMP),
+('jane.smith@example.com', '$2a$10$VK/DtGPGSOFd8pkJh8v3A.kb4qvwGUH8FqXrh2mZFn.0L9TgIWlBi', 'Jane', 'Smith', 'USER', CURRENT_TIMESTAMP);
 
 -- Sample Products
 INSERT INTO products (name, price, image, category, rating, description) VALUES
@@ -18,12 +18,12 @@ INSERT INTO cart_items (user_id, product_id, quantity) VALUES
 (2, 2, 1);
 
 -- Sample Orders
-INSERT INTO orders (user_id, total, shipping_address, payment_method, status, created_at) VALUES
-(1, 179.97, '123 Main St, City, Country', 'CREDIT_CARD', 'COMPLETED', CURRENT_TIMESTAMP),
-(2, 199.99, '456 Oak St, City, Country', 'PAYPAL', 'PENDING', CURRENT_TIMESTAMP);
+INSERT INTO orders (id, order_number, user_id, total, shipping_address, payment_method, status, created_at) VALUES
+(1, 'SN-0000000000001', 1, 179.97, '123 Main St, City, Country', 'CREDIT_CARD', 'COMPLETED', CURRENT_TIMESTAMP),
+(2, 'SN-0000000000002', 2, 199.99, '456 Oak St, City, Country', 'PAYPAL', 'PENDING', CURRENT_TIMESTAMP);
 
 -- Sample Order Items
-INSERT INTO order_items (order_id, product_id, quantity, price) VALUES
-(1, 1, 1, 129.99),
-(1, 3, 2, 24.99),
-(2, 2, 1, 199.99);
\ No newline at end of file
+INSERT INTO order_items (id, order_id, product_id, quantity, price) VALUES
+(1, 1, 1, 1, 129.99),
+(2, 1, 3, 2, 24.99),
+(3, 2, 2, 1, 199.99);
\ No newline at end of file
@@ -5,6 +5,7 @@ CREATE TABLE IF NOT EXISTS users (
     password VARCHAR(255) NOT NULL,
     first_name VARCHAR(255),
     last_name VARCHAR(255),
+    role VARCHAR(32) DEFAULT 'USER' NOT NULL,
     created_at VARCHAR(255)
 );
 
@@ -16,7 +17,10 @@ CREATE TABLE IF NOT EXISTS products (
     image VARCHAR(1000),
     category VARCHAR(255),
     rating DOUBLE,
-    description VARCHAR(1000)
+    description VARCHAR(1000),
+    stock INT,
+    updated_at TIMESTAMP,
+    feed_id BIGINT UNIQUE
 );
 
 -- Create cart_items table
@@ -32,19 +36,22 @@ CREATE TABLE IF NOT EXISTS cart_items (
 
 -- Create orders table
 CREATE TABLE IF NOT EXISTS orders (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
+    order_number VARCHAR(32) UNIQUE,
     user_id BIGINT NOT NULL,
     total_amount DOUBLE NOT NULL,
     status VARCHAR(255) NOT NULL,
     shipping_address VARCHAR(1000),
     payment_method VARCHAR(255),
     created_at VARCHAR(255),
-    FOREIGN KEY (user_id) REFERENCES users(id)
+    idempotency_key VARCHAR(255),
+    FOREIGN KEY (user_id) REFERENCES users(id),
+    UNIQUE (user_id, idempotency_key)
 );
 
 -- Create order_items table
 CREATE TABLE IF NOT EXISTS order_items (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     order_id BIGINT NOT NULL,
     product_id BIGINT NOT NULL,
     quantity INT NOT NULL,
@@ -52,3 +59,48 @@ CREATE TABLE IF NOT EXISTS order_items (
     FOREIGN KEY (order_id) REFERENCES orders(id),
     FOREIGN KEY (product_id) REFERENCES products(id)
 );
+
+-- Create import_jobs table
+CREATE TABLE IF NOT EXISTS import_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    source VARCHAR(1000) NOT NULL,
+    format VARCHAR(255) NOT NULL,
+    mode VARCHAR(255) NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    chunk_size INT NOT NULL,
+    processed_rows BIGINT NOT NULL,
+    imported_rows BIGINT NOT NULL,
+    rejected_rows BIGINT NOT NULL,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP
+);
+
+-- Create order_events table (transactional outbox for order post-processing)
+CREATE TABLE IF NOT EXISTS order_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    attempts INT NOT NULL,
+    last_error VARCHAR(1000),
+    available_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    processed_at TIMESTAMP
+);
+
+-- Create order_status_changes table (change outbox tailed by the order status stream)
+CREATE TABLE IF NOT EXISTS order_status_changes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+-- Create stock_sales table (units sold but not yet folded into products.stock)
+CREATE TABLE IF NOT EXISTS stock_sales (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    quantity INT NOT NULL
+);
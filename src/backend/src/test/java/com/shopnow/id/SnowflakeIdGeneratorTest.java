@@ -0,0 +1,150 @@
+package com.shopnow.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+    private static final long NOW = SnowflakeIdGenerator.EPOCH + 1_000_000L;
+
+    @Test
+    void concurrentThreadsGetUniqueIdsIncreasingPerThread() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            long[] all = new long[threads * perThread];
+            int offset = 0;
+            for (Future<long[]> result : results) {
+                long[] ids = result.get(30, TimeUnit.SECONDS);
+                for (int i = 1; i < ids.length; i++) {
+                    assertTrue(ids[i] > ids[i - 1], "ids from one thread must increase");
+                }
+                System.arraycopy(ids, 0, all, offset, ids.length);
+                offset += ids.length;
+            }
+            Arrays.sort(all);
+            for (int i = 1; i < all.length; i++) {
+                assertTrue(all[i] != all[i - 1], "duplicate id " + all[i]);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void differentNodesNeverCollide() {
+        long[] nodeIds = {0, 1, 42, 513, SnowflakeIdGenerator.MAX_NODE_ID};
+        Set<Long> seen = new HashSet<>();
+        for (long nodeId : nodeIds) {
+            // Same frozen clock for every node, so only the node bits can keep the ids apart.
+            SnowflakeIdGenerator generator = new SnowflakeIdGenerator(nodeId, () -> NOW);
+            for (int i = 0; i < 1000; i++) {
+                long id = generator.nextId();
+                assertEquals(nodeId, SnowflakeIdGenerator.nodeOf(id));
+                assertTrue(seen.add(id), "node " + nodeId + " repeated id " + id);
+            }
+        }
+    }
+
+    @Test
+    void rejectsNodeIdsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    void clockMovingBackwardsKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, clock::get);
+        long before = generator.nextId();
+        assertEquals(NOW, SnowflakeIdGenerator.timestampOf(before));
+
+        clock.set(NOW - 10_000);
+        long last = before;
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last, "id went backwards with the clock");
+            assertTrue(SnowflakeIdGenerator.timestampOf(id) >= NOW);
+            last = id;
+        }
+
+        clock.set(NOW + 60_000);
+        long after = generator.nextId();
+        assertTrue(after > last);
+        assertEquals(NOW + 60_000, SnowflakeIdGenerator.timestampOf(after));
+    }
+
+    @Test
+    void exhaustedSequenceMovesOnToTheNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> NOW);
+        long last = generator.nextId();
+        for (int i = 0; i < 3 * (SnowflakeIdGenerator.SEQUENCE_MASK + 1); i++) {
+            long id = generator.nextId();
+            assertTrue(id > last);
+            last = id;
+        }
+        assertTrue(SnowflakeIdGenerator.timestampOf(last) > NOW);
+    }
+
+    @Test
+    void nextIdsReservesAConsecutiveBlock() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, () -> NOW);
+        long first = generator.nextIds(100);
+        assertEquals(first + 100, generator.nextId());
+        assertEquals(NOW, SnowflakeIdGenerator.timestampOf(first + 99));
+        assertEquals(5, SnowflakeIdGenerator.nodeOf(first + 99));
+    }
+
+    @Test
+    void blockThatDoesNotFitStartsInTheNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, () -> NOW);
+        long first = generator.nextIds(4000);
+        long next = generator.nextIds(200);
+        assertTrue(next > first + 3999);
+        assertEquals(NOW + 1, SnowflakeIdGenerator.timestampOf(next));
+        assertEquals(NOW + 1, SnowflakeIdGenerator.timestampOf(next + 199));
+
+        long full = generator.nextIds((int) SnowflakeIdGenerator.SEQUENCE_MASK + 1);
+        assertEquals(0, full & SnowflakeIdGenerator.SEQUENCE_MASK);
+        assertEquals(NOW + 2, SnowflakeIdGenerator.timestampOf(full));
+    }
+
+    @Test
+    void rejectsBlockSizesOutOfRange() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0);
+        assertEquals(4096, generator.maxBlockSize());
+        assertThrows(IllegalArgumentException.class, () -> generator.nextIds(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.nextIds(generator.maxBlockSize() + 1));
+    }
+}
@@ -0,0 +1,144 @@
+package com.shopnow.service;
+
+import com.shopnow.dto.CartItemDto;
+import com.shopnow.dto.CartOperation;
+import com.shopnow.model.User;
+import com.shopnow.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress test for the single-statement cart upsert: many threads writing the
+ * same cart lines at once must neither lose increments nor create duplicate
+ * lines for a product.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cart-concurrency",
+        "spring.jpa.show-sql=false",
+        "shopnow.snapshot.enabled=false"
+})
+class CartServiceConcurrencyTest {
+    private static final int THREADS = 16;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void concurrentIncrementsOfOneLineAreNotLost() throws Exception {
+        User user = userService.reference(newUser("increments").getId());
+        int perThread = 250;
+
+        runConcurrently(() -> {
+            for (int i = 0; i < perThread; i++) {
+                cartService.incrementCart(user, 1L, 1);
+            }
+            return null;
+        });
+
+        List<CartItemDto> items = cartService.getCart(user.getId()).getItems();
+        assertEquals(1, items.size());
+        assertEquals(THREADS * perThread, items.get(0).getQuantity());
+    }
+
+    @Test
+    void concurrentFirstWritesCreateOneLinePerProduct() throws Exception {
+        User user = userService.reference(newUser("first-writes").getId());
+
+        runConcurrently(() -> {
+            for (long productId = 1; productId <= 5; productId++) {
+                cartService.addToCart(user, productId, 3);
+            }
+            return null;
+        });
+
+        List<CartItemDto> items = cartService.getCart(user.getId()).getItems();
+        assertEquals(5, items.size());
+        items.forEach(item -> assertEquals(3, item.getQuantity()));
+    }
+
+    @Test
+    void mixedSetsAndIncrementsEndAtTheLastSetPlusLaterDeltas() throws Exception {
+        User user = userService.reference(newUser("mixed").getId());
+        cartService.addToCart(user, 2L, 100);
+
+        runConcurrently(() -> {
+            for (int i = 0; i < 100; i++) {
+                cartService.incrementCart(user, 2L, 1);
+                cartService.incrementCart(user, 2L, -1);
+            }
+            return null;
+        });
+
+        assertEquals(100, cartService.getCart(user.getId()).getItems().get(0).getQuantity());
+    }
+
+    @Test
+    void batchesInterleaveWithConcurrentIncrementsWithoutLosingThem() throws Exception {
+        User user = userService.reference(newUser("batches").getId());
+        int perThread = 50;
+        List<CartOperation> batch = List.of(
+                new CartOperation(CartOperation.ADD, 3L, 1),
+                new CartOperation(CartOperation.ADD, 4L, 1));
+
+        runConcurrently(() -> {
+            for (int i = 0; i < perThread; i++) {
+                assertTrue(cartService.applyBatch(user, batch).isApplied());
+                cartService.incrementCart(user, 3L, 1);
+            }
+            return null;
+        });
+
+        Map<String, Integer> quantities = new HashMap<>();
+        cartService.getCart(user.getId()).getItems()
+                .forEach(item -> quantities.put(item.getProduct().getId(), item.getQuantity()));
+        assertEquals(Map.of("3", 2 * THREADS * perThread, "4", THREADS * perThread), quantities);
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setEmail(name + "@cart-concurrency.test");
+        user.setPassword("unused");
+        return userRepository.save(user);
+    }
+
+    private static void runConcurrently(Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
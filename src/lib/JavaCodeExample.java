@@ -5,65 +5,127 @@
 package com.ecommerce.cart;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
 
+/**
+ * Thread-safe cart engine. Lines live in an open-addressing table of parallel
+ * arrays (product id, product, quantity, unit price in cents) with linear
+ * probing and backward-shift deletion, so there are no entry objects or boxed
+ * quantities. The total in cents and the item count are running sums adjusted
+ * by each mutation, which makes every mutation O(1) and allocation-free unless
+ * the table has to grow. Readers of the totals use an optimistic read.
+ */
 public class ShoppingCart {
-    private String userId;
-    private Map<String, CartItem> items;
-    private double total;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String userId;
+    private final StampedLock lock = new StampedLock();
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private Product[] products = new Product[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] unitCents = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private long totalCents;
+    private long itemCount;
 
     public ShoppingCart(String userId) {
         this.userId = userId;
-        this.items = new HashMap<>();
-        this.total = 0.0;
     }
 
     public void addItem(Product product, int quantity) {
-        String productId = product.getId();
-        if (items.containsKey(productId)) {
-            CartItem item = items.get(productId);
-            item.setQuantity(item.getQuantity() + quantity);
-        } else {
-            items.put(productId, new CartItem(product, quantity));
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(product.getId());
+            if (slot >= 0) {
+                setQuantity(slot, Math.addExact(quantities[slot], quantity));
+            } else {
+                insert(~slot, product, quantity);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        calculateTotal();
     }
 
     public void updateItemQuantity(String productId, int quantity) {
-        if (items.containsKey(productId)) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(productId);
+            if (slot < 0) {
+                return;
+            }
             if (quantity <= 0) {
-                removeItem(productId);
+                delete(slot);
             } else {
-                items.get(productId).setQuantity(quantity);
-                calculateTotal();
+                setQuantity(slot, quantity);
             }
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
 
     public void removeItem(String productId) {
-        items.remove(productId);
-        calculateTotal();
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(productId);
+            if (slot >= 0) {
+                delete(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
     public void clear() {
-        items.clear();
-        total = 0.0;
+        long stamp = lock.writeLock();
+        try {
+            clearLines();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    private void calculateTotal() {
-        total = items.values().stream()
-                .mapToDouble(item -> item.getProduct().getPrice() * item.getQuantity())
-                .sum();
+    public int getQuantity(String productId) {
+        long stamp = lock.readLock();
+        try {
+            int slot = find(productId);
+            return slot >= 0 ? quantities[slot] : 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     public List<CartItem> getItems() {
-        return new ArrayList<>(items.values());
+        long stamp = lock.readLock();
+        try {
+            return snapshot();
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     public double getTotal() {
-        return total;
+        return getTotalCents() / 100.0;
+    }
+
+    public long getTotalCents() {
+        long stamp = lock.tryOptimisticRead();
+        long cents = totalCents;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                cents = totalCents;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return cents;
     }
 
     public String getUserId() {
@@ -71,15 +133,159 @@ public class ShoppingCart {
     }
 
     public int getItemCount() {
-        return items.values().stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
+        long stamp = lock.tryOptimisticRead();
+        long count = itemCount;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = itemCount;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Math.toIntExact(count);
+    }
+
+    public int getLineCount() {
+        long stamp = lock.tryOptimisticRead();
+        int lines = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                lines = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return lines;
+    }
+
+    // Returns the slot holding productId, or ~slot of the empty slot where it would go.
+    private int find(String productId) {
+        int mask = keys.length - 1;
+        int slot = spread(productId.hashCode()) & mask;
+        while (true) {
+            String key = keys[slot];
+            if (key == null) {
+                return ~slot;
+            }
+            if (key.equals(productId)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(int slot, Product product, int quantity) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+            slot = ~find(product.getId());
+        }
+        long cents = toCents(product.getPrice());
+        keys[slot] = product.getId();
+        products[slot] = product;
+        quantities[slot] = quantity;
+        unitCents[slot] = cents;
+        size++;
+        totalCents = Math.addExact(totalCents, Math.multiplyExact(cents, quantity));
+        itemCount += quantity;
+    }
+
+    private void setQuantity(int slot, int quantity) {
+        int delta = quantity - quantities[slot];
+        quantities[slot] = quantity;
+        totalCents = Math.addExact(totalCents, Math.multiplyExact(unitCents[slot], delta));
+        itemCount += delta;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones.
+    private void delete(int slot) {
+        totalCents -= unitCents[slot] * quantities[slot];
+        itemCount -= quantities[slot];
+        size--;
+
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            int home = spread(keys[next].hashCode()) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                products[gap] = products[next];
+                quantities[gap] = quantities[next];
+                unitCents[gap] = unitCents[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = null;
+        products[gap] = null;
+        quantities[gap] = 0;
+        unitCents[gap] = 0;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        Product[] oldProducts = products;
+        int[] oldQuantities = quantities;
+        long[] oldCents = unitCents;
+        keys = new String[capacity];
+        products = new Product[capacity];
+        quantities = new int[capacity];
+        unitCents = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = ~find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                products[slot] = oldProducts[i];
+                quantities[slot] = oldQuantities[i];
+                unitCents[slot] = oldCents[i];
+            }
+        }
+    }
+
+    private void clearLines() {
+        if (keys.length > INITIAL_CAPACITY * 4) {
+            keys = new String[INITIAL_CAPACITY];
+            products = new Product[INITIAL_CAPACITY];
+            quantities = new int[INITIAL_CAPACITY];
+            unitCents = new long[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(keys, null);
+            Arrays.fill(products, null);
+            Arrays.fill(quantities, 0);
+            Arrays.fill(unitCents, 0);
+        }
+        size = 0;
+        totalCents = 0;
+        itemCount = 0;
+    }
+
+    private List<CartItem> snapshot() {
+        List<CartItem> items = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                items.add(new CartItem(products[i], quantities[i]));
+            }
+        }
+        return items;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B1;
+    }
+
+    private static long toCents(double price) {
+        if (!(price >= 0) || price > Long.MAX_VALUE / 100.0) {
+            throw new IllegalArgumentException("Invalid price: " + price);
+        }
+        return Math.round(price * 100);
     }
 
     // Inner classes for cart functionality
     public static class CartItem {
-        private Product product;
-        private int quantity;
+        private final Product product;
+        private final int quantity;
 
         public CartItem(Product product, int quantity) {
             this.product = product;
@@ -94,12 +300,12 @@ public class ShoppingCart {
             return quantity;
         }
 
-        public void setQuantity(int quantity) {
-            this.quantity = quantity;
+        public long getSubtotalCents() {
+            return toCents(product.getPrice()) * quantity;
         }
 
         public double getSubtotal() {
-            return product.getPrice() * quantity;
+            return getSubtotalCents() / 100.0;
         }
     }
 
@@ -141,18 +347,23 @@ public class ShoppingCart {
 
     // Example checkout process
     public Order checkout(String shippingAddress, String paymentMethod) {
-        if (items.isEmpty()) {
-            throw new IllegalStateException("Cannot checkout an empty cart");
-        }
-
-        Order order = new Order(userId, new ArrayList<>(items.values()), total, shippingAddress, paymentMethod);
-        // In a real implementation, this would save to database
-        // orderRepository.save(order);
-        
-        // Clear the cart after successful checkout
-        clear();
-        
-        return order;
+        long stamp = lock.writeLock();
+        try {
+            if (size == 0) {
+                throw new IllegalStateException("Cannot checkout an empty cart");
+            }
+
+            Order order = new Order(userId, snapshot(), totalCents / 100.0, shippingAddress, paymentMethod);
+            // In a real implementation, this would save to database
+            // orderRepository.save(order);
+
+            // Clear the cart after successful checkout
+            clearLines();
+
+            return order;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
     public static class Order {
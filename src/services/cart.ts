@@ -233,6 +233,75 @@ export async function removeCartItem(
   }
 }
 
+export interface CartOperation {
+  op: "ADD" | "UPDATE" | "REMOVE";
+  productId: string;
+  quantity?: number;
+}
+
+// Apply several cart changes in one request; all of them succeed or none do
+export async function applyCartOperations(
+  userId: string,
+  operations: CartOperation[],
+): Promise<CartItem[] | null> {
+  // Try Java backend first
+  if (await useJavaBackend()) {
+    try {
+      const token = localStorage.getItem("authToken");
+      if (!token) {
+        console.log("No auth token found, falling back to Supabase");
+        throw new Error("No auth token found");
+      }
+
+      const response = await fetch(
+        `${API_BASE_URL}/cart/${userId}/items/batch`,
+        {
+          method: "POST",
+          headers: {
+            "Content-Type": "application/json",
+            Authorization: `Bearer ${token}`,
+          },
+          body: JSON.stringify({ operations }),
+        },
+      );
+
+      const data = await response.json();
+      if (!data.applied) {
+        console.error("Cart batch rejected:", data.results);
+        return null;
+      }
+      return data.items || [];
+    } catch (error) {
+      console.error(
+        "Error applying cart batch in Java backend, falling back to Supabase:",
+        error,
+      );
+      // Fall back to Supabase if Java backend fails
+    }
+  }
+
+  // Supabase fallback, one request per operation
+  for (const operation of operations) {
+    if (
+      operation.op === "REMOVE" ||
+      (operation.op === "UPDATE" && operation.quantity === 0)
+    ) {
+      if (!(await removeCartItem(userId, operation.productId))) return null;
+    } else {
+      let quantity = operation.quantity ?? 1;
+      if (operation.op === "ADD") {
+        const existing = (await fetchCartItems(userId)).find(
+          (item) => item.product?.id === operation.productId,
+        );
+        quantity += existing?.quantity ?? 0;
+      }
+      if (!(await saveCartItem(userId, operation.productId, quantity)))
+        return null;
+    }
+  }
+  return fetchCartItems(userId);
+}
+
 // Create an order from cart items
 export async function createOrder(
   userId: string,